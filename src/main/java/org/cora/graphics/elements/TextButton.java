@@ -1,6 +1,7 @@
 package org.cora.graphics.elements;
 
 import org.cora.graphics.base.Image;
+import org.cora.graphics.base.Rect;
 import org.cora.graphics.font.Alignement;
 import org.cora.graphics.font.Font;
 import org.cora.graphics.font.TextPosition;
@@ -18,6 +19,14 @@ public class TextButton extends Button
     private TextRenderer text;
     private Image textImage = null;
     private boolean preRendering = true;
+
+    // Incremental update of the text image, with the text and settings of the image
+    private boolean isIncremental = false;
+    private boolean isImageValid = false;
+    private String imageTxt = null;
+    private TextRenderer imageSettings = null;
+    private int imageMetricsVersion;
+    private final Rect dirty = new Rect();
     
     public TextButton(int x, int y, int width, int height, TextRenderer text)
     {
@@ -52,6 +61,7 @@ public class TextButton extends Button
 
     public void setTextMiddleCenter()
     {
+        isImageValid = false;
         text.setPos((int) (getWidth()*0.5f), (int) (getHeight()*0.5f - text.getHeight()*0.5f));
         text.setTextPosition(TextPosition.TOP_CENTER);
         text.setAlignement(Alignement.TOP_CENTER);
@@ -59,6 +69,7 @@ public class TextButton extends Button
 
     public void setTextMiddleLeft()
     {
+        isImageValid = false;
         text.setPos(0, (int) (getHeight()*0.5f - text.getHeight()*0.5f));
         text.setTextPosition(TextPosition.LEFT);
         text.setAlignement(Alignement.LEFT);
@@ -66,6 +77,7 @@ public class TextButton extends Button
 
     public void setTextMiddleRight()
     {
+        isImageValid = false;
         text.setPos((int) getWidth(), (int) (getHeight()*0.5f - text.getHeight()*0.5f));
         text.setTextPosition(TextPosition.RIGHT);
         text.setAlignement(Alignement.RIGHT);
@@ -73,6 +85,7 @@ public class TextButton extends Button
 
     public void setTextTopCenter()
     {
+        isImageValid = false;
         text.setPos((int) (getWidth()*0.5f), 0);
         text.setTextPosition(TextPosition.TOP_CENTER);
         text.setAlignement(Alignement.TOP_CENTER);
@@ -80,6 +93,7 @@ public class TextButton extends Button
 
     public void setTextTopLeft()
     {
+        isImageValid = false;
         text.setPos(0, 0);
         text.setTextPosition(TextPosition.LEFT);
         text.setAlignement(Alignement.LEFT);
@@ -87,6 +101,7 @@ public class TextButton extends Button
 
     public void setTextTopRight()
     {
+        isImageValid = false;
         text.setPos((int) getWidth(), 0);
         text.setTextPosition(TextPosition.RIGHT);
         text.setAlignement(Alignement.RIGHT);
@@ -94,6 +109,7 @@ public class TextButton extends Button
 
     public void setTextBotCenter()
     {
+        isImageValid = false;
         text.setPos((int) (getWidth()*0.5f), (int) (getHeight() - text.getHeight()));
         text.setTextPosition(TextPosition.TOP_CENTER);
         text.setAlignement(Alignement.TOP_CENTER);
@@ -101,6 +117,7 @@ public class TextButton extends Button
 
     public void setTextBotLeft()
     {
+        isImageValid = false;
         text.setPos(0, (int)  (int) (getHeight() - text.getHeight()));
         text.setTextPosition(TextPosition.LEFT);
         text.setAlignement(Alignement.LEFT);
@@ -108,6 +125,7 @@ public class TextButton extends Button
 
     public void setTextBotRight()
     {
+        isImageValid = false;
         text.setPos((int) getWidth(), (int) (int) (getHeight() - text.getHeight()));
         text.setTextPosition(TextPosition.RIGHT);
         text.setAlignement(Alignement.RIGHT);
@@ -122,6 +140,7 @@ public class TextButton extends Button
      */
     public void setTextPos(int x, int y)
     {
+        isImageValid = false;
         text.setPos(x, y);
     }
     
@@ -132,11 +151,13 @@ public class TextButton extends Button
     
     public void setTextBackColor(myColor backColorText)
     {
+        isImageValid = false;
         text.setBackColor(backColorText);
     }
     
     public void setTextColor(myColor fontColorText)
     {
+        isImageValid = false;
         text.setFontColor(fontColorText);
     }
 
@@ -158,16 +179,57 @@ public class TextButton extends Button
     }
 
     /**
-     * Update the text image used with preRendering
+     * Render the text image used with preRendering again
      */
     public void updateImage()
     {
         freeTextImage();
 
         textImage = text.transformToImage(txt);
+        imageTxt = txt;
+        imageSettings = (TextRenderer) text.clone();
+        imageMetricsVersion = text.getFont().getMetricsVersion();
+        isImageValid = true;
 
         loadTextImage();
     }
+
+    /**
+     * @return image was rendered with the same settings as the text renderer
+     */
+    private boolean hasSameSettings()
+    {
+        return isImageValid && imageSettings != null && text.hasSameRendering(imageSettings)
+                && imageMetricsVersion == text.getFont().getMetricsVersion();
+    }
+
+    /**
+     * Update the text image after a change of text
+     * Only changed letters are rendered in the image and uploaded in its texture,
+     * as long as the image size and the rendering settings don't change.
+     */
+    private void updateImageIncrementally()
+    {
+        if (textImage != null && txt != null && hasSameSettings()
+                && textImage.getSpriteData().surface.texture > 0)
+        {
+            if (txt.equals(imageTxt))
+                return;
+
+            if (text.updateImage(textImage, imageTxt, txt, dirty))
+            {
+                imageTxt = txt;
+                if (dirty.w > 0)
+                {
+                    TextureManager.getInstance().updateTextureGL(textImage.getSpriteData().surface,
+                            dirty.x, dirty.y, dirty.w, dirty.h);
+                }
+                return;
+            }
+        }
+
+        updateImage();
+    }
     
     public void render(Graphics g)
     {
@@ -182,6 +244,8 @@ public class TextButton extends Button
         {
             if (textImage == null)
                 updateImage();
+            else if (isIncremental && (txt != null && !txt.equals(imageTxt) || !hasSameSettings()))
+                updateImageIncrementally();
             if (textImage != null)
                 textImage.draw(g);
         }
@@ -210,6 +274,7 @@ public class TextButton extends Button
     
     public void setTextRenderer(TextRenderer text)
     {
+        isImageValid = false;
         this.text = text;
     }
 
@@ -231,6 +296,22 @@ public class TextButton extends Button
         return preRendering;
     }
 
+    /**
+     *
+     * @param incremental render only changed letters of the text image,
+     * the image is updated at rendering when the text or the settings of the
+     * text renderer change
+     */
+    public void setIncremental(boolean incremental)
+    {
+        this.isIncremental = incremental;
+    }
+
+    public boolean getIncremental()
+    {
+        return isIncremental;
+    }
+
     public void setTextSize(int size)
     {
         text.setSize(size);
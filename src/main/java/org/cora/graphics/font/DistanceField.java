@@ -0,0 +1,245 @@
+package org.cora.graphics.font;
+
+import org.cora.graphics.graphics.Surface;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Create signed distance fields of font surfaces
+ * Each glyph cell is transformed alone with the exact euclidean distance
+ * transform of Felzenszwalb and Huttenlocher, cells are shared between
+ * threads. A pixel stores 127.5 plus its distance to the glyph edge, positive
+ * inside the glyph, so the edge is where the bilinear sampled value is 0.5
+ * at any scale.
+ */
+public class DistanceField
+{
+    public final static int DEFAULT_SPREAD = 4;
+
+    private final static int   CELLS_PER_TASK = 16;
+    private final static float INF = 1e20f;
+
+    /**
+     * Transform cells by groups of CELLS_PER_TASK
+     */
+    private static class CellsTask extends RecursiveAction
+    {
+        private final Surface source, field;
+        private final int     width, height;
+        private final int     first, last;
+
+        CellsTask(Surface source, Surface field, int width, int height, int first, int last)
+        {
+            this.source = source;
+            this.field = field;
+            this.width = width;
+            this.height = height;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (last - first <= CELLS_PER_TASK)
+            {
+                new DistanceField(width, height).transformCells(source, field, first, last);
+                return;
+            }
+
+            int middle = (first + last) >>> 1;
+            invokeAll(new CellsTask(source, field, width, height, first, middle),
+                    new CellsTask(source, field, width, height, middle, last));
+        }
+    }
+
+    private final int width, height;
+
+    // Squared distances to the nearest outside and inside pixels of a cell
+    private final float outside[];
+    private final float inside[];
+
+    // Lines of the 1D transform
+    private final float f[];
+    private final float d[];
+    private final int   v[];
+    private final float z[];
+
+    private DistanceField(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        outside = new float[width * height];
+        inside = new float[width * height];
+
+        int n = Math.max(width, height);
+        f = new float[n];
+        d = new float[n];
+        v = new int[n];
+        z = new float[n + 1];
+    }
+
+    /**
+     * Create distance field of a RGBA font surface, pixels with alpha of at
+     * least 128 are inside glyphs
+     *
+     * @param source font surface
+     * @param width  width of one glyph cell
+     * @param height height of one glyph cell
+     * @param spread largest stored distance in pixels
+     *
+     * @return one byte per pixel surface, null if source is not RGBA
+     */
+    public static Surface create(Surface source, int width, int height, int spread)
+    {
+        if (source.BytesPerPixel != 4)
+        {
+            System.out.println("Can't create distance field of " + source.textureName
+                    + ", bytes per pixel " + source.BytesPerPixel);
+            return null;
+        }
+
+        Surface field = new Surface();
+        field.w = source.w;
+        field.h = source.h;
+        field.BytesPerPixel = 1;
+        field.distanceSpread = spread;
+        field.texture = -1;
+        field.textureName = source.textureName;
+        field.pixels = BufferUtils.createByteBuffer(source.w * source.h);
+
+        int cells = (source.w / width) * (source.h / height);
+        ForkJoinPool.commonPool().invoke(new CellsTask(source, field, width, height, 0, cells));
+        return field;
+    }
+
+    /**
+     * @param value distance field pixel, from 0 to 255
+     * @param spread distance of the field
+     * @return distance to the edge in pixels, positive inside
+     */
+    public static float getDistance(int value, int spread)
+    {
+        return (value - 127.5f) * spread / 127.5f;
+    }
+
+    /**
+     * @param value distance field pixel, from 0 to 255
+     * @param spread distance of the field
+     * @return alpha of the pixel rendered at the size of the field, from 0 to 255
+     */
+    public static int getCoverage(int value, int spread)
+    {
+        float coverage = getDistance(value, spread) + 0.5f;
+        return Math.round(Math.max(0, Math.min(1, coverage)) * 255);
+    }
+
+    private void transformCells(Surface source, Surface field, int first, int last)
+    {
+        int cols = source.w / width;
+        for (int i = first; i < last; i++)
+            transformCell(source, field, (i % cols) * width, (i / cols) * height);
+    }
+
+    private void transformCell(Surface source, Surface field, int x0, int y0)
+    {
+        ByteBuffer pixels = source.pixels;
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                boolean in = (pixels.get((x0 + x + (y0 + y) * source.w) * 4 + 3) & 0xFF) >= 128;
+                outside[x + y * width] = in ? INF : 0;
+                inside[x + y * width] = in ? 0 : INF;
+            }
+        }
+
+        transform(outside);
+        transform(inside);
+
+        ByteBuffer out = field.pixels;
+        float factor = 127.5f / field.distanceSpread;
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                int i = x + y * width;
+
+                // Pixel centers are half a pixel away from the edge
+                float distance;
+                if (outside[i] != 0)
+                    distance = (float) Math.sqrt(outside[i]) - 0.5f;
+                else
+                    distance = 0.5f - (float) Math.sqrt(inside[i]);
+
+                int value = Math.round(127.5f + distance * factor);
+                value = Math.max(0, Math.min(255, value));
+                out.put(x0 + x + (y0 + y) * field.w, (byte) value);
+            }
+        }
+    }
+
+    /**
+     * Replace 0 and INF of grid by squared distances to the nearest 0
+     */
+    private void transform(float[] grid)
+    {
+        for (int x = 0; x < width; x++)
+        {
+            for (int y = 0; y < height; y++)
+                f[y] = grid[x + y * width];
+            transform(height);
+            for (int y = 0; y < height; y++)
+                grid[x + y * width] = d[y];
+        }
+
+        for (int y = 0; y < height; y++)
+        {
+            System.arraycopy(grid, y * width, f, 0, width);
+            transform(width);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+    }
+
+    /**
+     * 1D transform of f in d, lower envelope of parabolas rooted at each pixel
+     */
+    private void transform(int n)
+    {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -INF;
+        z[1] = INF;
+
+        for (int q = 1; q < n; q++)
+        {
+            float s = intersect(q, v[k]);
+            while (s <= z[k])
+            {
+                k--;
+                s = intersect(q, v[k]);
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = INF;
+        }
+
+        k = 0;
+        for (int q = 0; q < n; q++)
+        {
+            while (z[k + 1] < q)
+                k++;
+            float dq = q - v[k];
+            d[q] = dq * dq + f[v[k]];
+        }
+    }
+
+    private float intersect(int q, int p)
+    {
+        return ((f[q] + q * q) - (f[p] + p * p)) / (2 * q - 2 * p);
+    }
+}
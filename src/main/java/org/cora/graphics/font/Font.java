@@ -1,20 +1,94 @@
 package org.cora.graphics.font;
 
 import org.cora.graphics.graphics.Graphics;
+import org.cora.graphics.graphics.SpriteBatch;
 import org.cora.graphics.graphics.Surface;
 import org.cora.graphics.graphics.myColor;
+import org.cora.graphics.manager.FontManager;
+import org.cora.graphics.manager.FontMetricsCache;
 
 import java.nio.ByteBuffer;
-
-import static org.lwjgl.opengl.GL11.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Font used to render text
+ * Characters after the ones of the font surface are read from pages of 256
+ * glyphs, created by the page loader the first time one of their characters
+ * is used.
  */
 public class Font
 {
     public final static int NCHAR = 256;
 
+    private final static FontData EMPTY = new FontData();
+    private final static GlyphPage MISSING = new GlyphPage(null, 1, null);
+
+    static
+    {
+        EMPTY.isEmpty = true;
+    }
+
+    /**
+     * Open addressed map of pages by index, copied when a page is added
+     * so it's read without lock
+     */
+    private static class PageTable
+    {
+        final int       keys[];
+        final GlyphPage values[];
+        final int       count;
+
+        PageTable(int capacity, int count)
+        {
+            keys = new int[capacity];
+            values = new GlyphPage[capacity];
+            this.count = count;
+            for (int i = 0; i < capacity; i++)
+                keys[i] = -1;
+        }
+
+        GlyphPage get(int index)
+        {
+            int mask = keys.length - 1;
+            for (int i = (index * 0x9E3779B9) >>> 16 & mask; ; i = (i + 1) & mask)
+            {
+                if (keys[i] == index)
+                    return values[i];
+                if (keys[i] == -1)
+                    return null;
+            }
+        }
+
+        /**
+         * @return new table with the page added
+         */
+        PageTable add(int index, GlyphPage page)
+        {
+            // Keep at least half of the entries free
+            int capacity = (count + 1) * 2 > keys.length ? keys.length * 2 : keys.length;
+            PageTable table = new PageTable(capacity, count + 1);
+            for (int i = 0; i < keys.length; i++)
+            {
+                if (keys[i] != -1)
+                    table.put(keys[i], values[i]);
+            }
+            table.put(index, page);
+            return table;
+        }
+
+        private void put(int index, GlyphPage page)
+        {
+            int mask = keys.length - 1;
+            int i = (index * 0x9E3779B9) >>> 16 & mask;
+            while (keys[i] != -1)
+                i = (i + 1) & mask;
+            keys[i] = index;
+            values[i] = page;
+        }
+    }
+
     private int             width;
     private int             height;
     private int             cols, rows;
@@ -22,6 +96,12 @@ public class Font
     private FontData        fontData[];
     private String          name;
 
+    private GlyphPageLoader     pageLoader;
+    private volatile PageTable  pages;
+
+    // Changed with letters width, so cached layouts of the font are not used
+    private final AtomicInteger metricsVersion = new AtomicInteger();
+
     public Font()
     {
         this(NCHAR);
@@ -35,6 +115,7 @@ public class Font
     {
         this.surface = null;
         fontData = new FontData[NCHAR];
+        pages = new PageTable(8, 0);
 
         for (int i = 0; i < fontData.length; i++)
         {
@@ -42,6 +123,21 @@ public class Font
         }
     }
 
+    /**
+     * Create font without font surface, all characters are read from pages
+     * @param width length of one element
+     * @param height length of one element
+     */
+    protected Font(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+        cols = 1;
+        rows = 0;
+        fontData = new FontData[0];
+        pages = new PageTable(8, 0);
+    }
+
     /**
      * Create font and load the image
      * @param surface texture
@@ -53,6 +149,7 @@ public class Font
         this.surface = surface;
         this.width = width;
         this.height = height;
+        surface.keepPixels = true;
 
         cols = surface.w / width;
         rows = surface.h / height;
@@ -65,7 +162,8 @@ public class Font
         }
 
         name = surface.textureName;
-        
+        pages = new PageTable(8, 0);
+
         computeBounds();
     }
 
@@ -103,8 +201,10 @@ public class Font
         this.surface = surface;
         this.width = width;
         this.height = height;
+        surface.keepPixels = true;
         cols = surface.w / width;
         rows = surface.h / height;
+        pages = new PageTable(8, 0);
         if (computeBounds)
         {
             computeBounds();
@@ -115,6 +215,7 @@ public class Font
         }
         
         name = surface.textureName;
+        metricsChanged();
     }
 
     public void initBounds()
@@ -138,34 +239,102 @@ public class Font
                 col = col % cols;
             }
         }
+        metricsChanged();
+    }
+
+    /**
+     * Compute bounds of rows of letters
+     */
+    private class BoundsTask extends RecursiveAction
+    {
+        private final int first, last;
+
+        BoundsTask(int first, int last)
+        {
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (last - first <= 1)
+            {
+                computeBounds(first, last);
+                return;
+            }
+
+            int middle = (first + last) >>> 1;
+            invokeAll(new BoundsTask(first, middle), new BoundsTask(middle, last));
+        }
     }
 
     /**
      * Compute real length of each letter
+     * Bounds are read from the font metrics cache when enabled, otherwise rows
+     * of letters are scanned in parallel and the result is cached.
      */
     public void computeBounds()
     {
-        int row = 0;
-        int col = 0;
-        int actual = 0;
+        FontMetricsCache cache = FontManager.getInstance().getMetricsCache();
+        if (cache == null || !cache.read(surface, width, height, fontData))
+        {
+            ForkJoinPool.commonPool().invoke(new BoundsTask(0, rows));
+
+            if (cache != null)
+                cache.write(surface, width, height, fontData);
+        }
+        metricsChanged();
+    }
+
+    /**
+     * Compute real length of letters of rows from first to last excluded
+     */
+    private void computeBounds(int first, int last)
+    {
         int width = getWidth();
         int height = getHeight();
 
-        while (actual < fontData.length && row < rows)
+        for (int row = first; row < last; row++)
         {
-            computeBound(col * width, row * height, fontData[actual]);
-
-            actual++;
-            col++;
-
-            if (col >= cols)
+            for (int col = 0; col < cols; col++)
             {
-                row += col / cols;
-                col = col % cols;
+                int actual = col + row * cols;
+                if (actual >= fontData.length)
+                    return;
+
+                computeBound(surface, col * width, row * height, fontData[actual]);
             }
         }
     }
 
+    /**
+     * Replace the RGBA font surface by its distance field, so letters keep
+     * sharp edges at any scale with one byte per pixel
+     * Bounds of letters are kept, the new surface must be loaded in video memory
+     *
+     * @param spread largest stored distance in pixels
+     * @return distance field surface, null if the font surface is not RGBA
+     */
+    public Surface toDistanceField(int spread)
+    {
+        Surface field = DistanceField.create(surface, width, height, spread);
+        if (field != null)
+        {
+            field.keepPixels = true;
+            surface = field;
+        }
+        return field;
+    }
+
+    /**
+     * @return true if the font surface is a distance field
+     */
+    public boolean isDistanceField()
+    {
+        return surface != null && surface.distanceSpread > 0;
+    }
+
     /**
      *
      * @param width size of space
@@ -173,6 +342,7 @@ public class Font
     public void setSpaceSize(int width)
     {
         fontData[' '].width = width;
+        metricsChanged();
     }
 
     /**
@@ -180,7 +350,29 @@ public class Font
      */
     public void computeBound(int x0, int y0, FontData data)
     {
-        ByteBuffer pixels = surface.pixels;
+        computeBound(surface, x0, y0, data);
+        metricsChanged();
+    }
+
+    /**
+     * Invalidate cached layouts of text rendered with the font, to be called
+     * when letters width changes
+     */
+    protected void metricsChanged()
+    {
+        metricsVersion.incrementAndGet();
+    }
+
+    /**
+     * @return number changed with letters width
+     */
+    public int getMetricsVersion()
+    {
+        return metricsVersion.get();
+    }
+
+    private void computeBound(Surface surface, int x0, int y0, FontData data)
+    {
         data.left = x0;
         data.width = width;
         data.isEmpty = true;
@@ -190,7 +382,7 @@ public class Font
         {
             for (int y = y0; y < width + y0; y++)
             {
-                byte alpha = pixels.get((x + y * surface.w) * 4 + 3);
+                int alpha = getFontValue(surface, x + y * surface.w, 3, 4);
                 if (alpha != 0)
                 {
                     data.isEmpty = false;
@@ -213,10 +405,7 @@ public class Font
      */
     public int getWidth(char c)
     {
-        if (c < fontData.length)
-            return fontData[c].width;
-        else
-            return 0;
+        return getData(c).width;
     }
 
     public int getWidth()
@@ -236,10 +425,7 @@ public class Font
      */
     public int getXRec(char c)
     {
-        if (c < fontData.length)
-            return fontData[c].left;
-        else
-            return 0;
+        return getData(c).left;
     }
 
     /**
@@ -249,7 +435,9 @@ public class Font
      */
     public int getXRecFixed(char c)
     {
-        return (c % cols) * getWidth();
+        if (c < fontData.length)
+            return (c % cols) * getWidth();
+        return (c % GlyphPage.SIZE % getPage(c).cols) * getWidth();
     }
 
     /**
@@ -259,7 +447,168 @@ public class Font
      */
     public int getYRec(char c)
     {
-        return (c / cols) * getHeight();
+        if (c < fontData.length)
+            return (c / cols) * getHeight();
+        return (c % GlyphPage.SIZE / getPage(c).cols) * getHeight();
+    }
+
+    /**
+     * @param c letter
+     * @return true if the letter has visible pixels
+     */
+    public boolean hasGlyph(char c)
+    {
+        return !getData(c).isEmpty;
+    }
+
+    /**
+     * @param c letter
+     * @return surface holding the letter, null if the letter has no glyph
+     */
+    public Surface getSurface(char c)
+    {
+        if (c < fontData.length)
+            return surface;
+        return getPage(c).surface;
+    }
+
+    /**
+     * @param c letter
+     * @return bounds of the letter
+     */
+    protected FontData getData(char c)
+    {
+        if (c < fontData.length)
+            return fontData[c];
+
+        GlyphPage page = getPage(c);
+        return (page.data == null) ? EMPTY : page.data[c % GlyphPage.SIZE];
+    }
+
+    private GlyphPage getPage(char c)
+    {
+        if (pageLoader == null)
+            return MISSING;
+
+        int index = c / GlyphPage.SIZE;
+        GlyphPage page = pages.get(index);
+        return (page != null) ? page : loadPage(index);
+    }
+
+    /**
+     * Create page from the sheet given by the page loader
+     */
+    private synchronized GlyphPage loadPage(int index)
+    {
+        GlyphPage page = pages.get(index);
+        if (page != null)
+            return page;
+
+        Surface sheet = pageLoader.loadPage(this, index);
+        if (sheet == null || sheet.BytesPerPixel != 4 || sheet.w < width || sheet.h < height)
+        {
+            page = MISSING;
+        }
+        else
+        {
+            sheet.keepPixels = true;
+            int pageCols = sheet.w / width;
+            int cells = pageCols * (sheet.h / height);
+            FontData data[] = new FontData[GlyphPage.SIZE];
+
+            for (int i = 0; i < data.length; i++)
+            {
+                data[i] = new FontData();
+                if (i < cells)
+                {
+                    computeBound(sheet, (i % pageCols) * width, (i / pageCols) * height, data[i]);
+                }
+                else
+                {
+                    data[i].isEmpty = true;
+                }
+            }
+            page = new GlyphPage(sheet, pageCols, data);
+        }
+
+        pages = pages.add(index, page);
+        return page;
+    }
+
+    /**
+     * Create pages of all characters of text now, so rendering doesn't load pages
+     *
+     * @param text used characters
+     */
+    public void loadPages(CharSequence text)
+    {
+        for (int i = 0; i < text.length(); i++)
+        {
+            char c = text.charAt(i);
+            if (c >= fontData.length)
+                getPage(c);
+        }
+    }
+
+    /**
+     * @return letters of loaded pages can be rendered by several threads at once
+     */
+    public boolean canPrintInParallel()
+    {
+        return true;
+    }
+
+    /**
+     * Set creator of pages of characters missing from the font surface
+     * Pages already created are removed and cached text layouts are invalidated
+     *
+     * @param pageLoader page creator, null to ignore missing characters
+     */
+    public synchronized void setPageLoader(GlyphPageLoader pageLoader)
+    {
+        this.pageLoader = pageLoader;
+        pages = new PageTable(8, 0);
+        metricsChanged();
+    }
+
+    public GlyphPageLoader getPageLoader()
+    {
+        return pageLoader;
+    }
+
+    /**
+     * @return number of pages created, including missing pages
+     */
+    public int getPageCount()
+    {
+        return pages.count;
+    }
+
+    /**
+     * @return bytes of glyph data and pixels of the font surface and its pages
+     */
+    public long getMemoryUsage()
+    {
+        // Object header, two int and a boolean, and the reference in the array
+        final int fontDataSize = 24 + 4;
+
+        long bytes = (long) fontData.length * fontDataSize;
+        if (surface != null)
+            bytes += surface.getByteSize();
+
+        PageTable table = pages;
+        for (GlyphPage page : table.values)
+        {
+            if (page != null && page.surface != null)
+                bytes += page.surface.getByteSize() + (long) GlyphPage.SIZE * fontDataSize;
+        }
+        return bytes;
+    }
+
+    public String getStats()
+    {
+        return fontData.length + " glyphs in font surface, " + pages.count + " pages, "
+                + (getMemoryUsage() >> 10) + " KB";
     }
 
     public int[] getWidthHeight(String string)
@@ -287,18 +636,19 @@ public class Font
     private void printChar(Graphics g, char c, int w, int xrec, int x, int y,
             float scale)
     {
+        Surface surface = getSurface(c);
         int h = getHeight();
 
         int yrec = getYRec(c);
 
-        glPushMatrix();
+        g.pushMatrix();
 
-        glTranslatef(x, y, 0);
-        glScalef(scale, scale, 1.0f);
-        glTranslatef(-xrec, -yrec, 0);
+        g.translate(x, y);
+        g.scale(scale);
+        g.translate(-xrec, -yrec);
         g.render(surface, xrec, yrec, w, h);
 
-        glPopMatrix();
+        g.popMatrix();
     }
 
     /**
@@ -311,7 +661,7 @@ public class Font
      */
     public void print(Graphics g, char c, int x, int y, float scale)
     {
-        if (c < fontData.length && !fontData[c].isEmpty)
+        if (hasGlyph(c))
         {
             printChar(g, c, getWidth(c), getXRec(c), x, y, scale);
         }
@@ -327,7 +677,7 @@ public class Font
      */
     public void printFixedWidth(Graphics g, char c, int x, int y, float scale)
     {
-        if (c < fontData.length && !fontData[c].isEmpty)
+        if (hasGlyph(c))
         {
             printChar(g, c, getWidth(), getXRecFixed(c), x, y, scale);
         }
@@ -344,15 +694,16 @@ public class Font
      */
     private void printChar(Graphics g, char c, int w, int xrec, int x, int y)
     {
+        Surface surface = getSurface(c);
         int h = getHeight();
         int yrec = getYRec(c);
 
-        glPushMatrix();
+        g.pushMatrix();
 
-        glTranslatef(x - xrec, y - yrec, 0);
+        g.translate(x - xrec, y - yrec);
         g.render(surface, xrec, yrec, w, h);
 
-        glPopMatrix();
+        g.popMatrix();
     }
 
     /**
@@ -364,7 +715,7 @@ public class Font
      */
     public void print(Graphics g, char c, int x, int y)
     {
-        if (c < fontData.length && !fontData[c].isEmpty)
+        if (hasGlyph(c))
         {
             printChar(g, c, getWidth(c), getXRec(c), x, y);
         }
@@ -379,12 +730,69 @@ public class Font
      */
     public void printFixedWidth(Graphics g, char c, int x, int y)
     {
-        if (c < fontData.length && !fontData[c].isEmpty)
+        if (hasGlyph(c))
         {
             printChar(g, c, getWidth(), getXRecFixed(c), x, y);
         }
     }
 
+    /**
+     * Add one letter to batch
+     * @param batch started sprite batch
+     * @param c letter
+     * @param w width
+     * @param xrec position of the letter
+     * @param x rendering position
+     * @param y rendering position
+     * @param scale scaling factor
+     * @param color letter color
+     */
+    private void printChar(SpriteBatch batch, char c, int w, int xrec, float x,
+            float y, float scale, myColor color)
+    {
+        Surface surface = getSurface(c);
+        int h = getHeight();
+        int yrec = getYRec(c);
+
+        batch.draw(surface, xrec, yrec, w, h, x, y, w * scale, h * scale, color);
+    }
+
+    /**
+     * Add one letter to batch
+     * @param batch started sprite batch
+     * @param c letter
+     * @param x rendering position
+     * @param y rendering position
+     * @param scale scaling factor
+     * @param color letter color
+     */
+    public void print(SpriteBatch batch, char c, float x, float y, float scale,
+            myColor color)
+    {
+        if (hasGlyph(c))
+        {
+            printChar(batch, c, getWidth(c), getXRec(c), x, y, scale, color);
+        }
+    }
+
+    /**
+     * Add one letter with fixed size to batch
+     * @param batch started sprite batch
+     * @param c letter
+     * @param x rendering position
+     * @param y rendering position
+     * @param scale scaling factor
+     * @param color letter color
+     */
+    public void printFixedWidth(SpriteBatch batch, char c, float x, float y,
+            float scale, myColor color)
+    {
+        if (hasGlyph(c))
+        {
+            printChar(batch, c, getWidth(), getXRecFixed(c), x, y, scale, color);
+        }
+    }
+
     /**
      * Render one letter on buffer wihtout alpha
      * @param pixels render output
@@ -398,11 +806,12 @@ public class Font
     private void printChar(ByteBuffer pixels, char c, int w, int xrec, int x,
             int y, int width, int bytesPerPixel)
     {
+        Surface surface = getSurface(c);
         int h = getHeight();
         int yrec = getYRec(c);
 
         int startImage = (x + y * width) * bytesPerPixel;
-        int startFont = (xrec + yrec * surface.w) * bytesPerPixel;
+        int startFont = xrec + yrec * surface.w;
 
         for (int j = 0; j < h; j++)
         {
@@ -412,8 +821,8 @@ public class Font
                 {
                     pixels.put(
                             startImage + (i + j * width) * bytesPerPixel + t,
-                            surface.pixels.get(startFont + (i + j * surface.w)
-                                    * bytesPerPixel + t));
+                            (byte) getFontValue(surface, startFont + i + j * surface.w,
+                                    t, bytesPerPixel));
                 }
             }
         }
@@ -432,19 +841,19 @@ public class Font
     private void printCharAlpha(ByteBuffer pixels, char c, int w, int xrec,
             int x, int y, int width, int bytesPerPixel)
     {
+        Surface surface = getSurface(c);
         int h = getHeight();
         int yrec = getYRec(c);
 
         int startImage = (x + y * width) * bytesPerPixel;
-        int startFont = (xrec + yrec * surface.w) * bytesPerPixel;
+        int startFont = xrec + yrec * surface.w;
 
         for (int j = 0; j < h; j++)
         {
             for (int i = 0; i < w; i++)
             {
-                byte alpha = (surface.pixels.get(startFont
-                        + (i + j * surface.w) * bytesPerPixel + bytesPerPixel
-                        - 1));
+                int pixel = startFont + i + j * surface.w;
+                byte alpha = (byte) getFontValue(surface, pixel, bytesPerPixel - 1, bytesPerPixel);
 
                 if (alpha != 0)
                 {
@@ -453,9 +862,7 @@ public class Font
                         pixels.put(
                                 startImage + (i + j * width) * bytesPerPixel
                                         + t,
-                                surface.pixels.get(startFont
-                                        + (i + j * surface.w) * bytesPerPixel
-                                        + t));
+                                (byte) getFontValue(surface, pixel, t, bytesPerPixel));
                     }
                     pixels.put(startImage + (i + j * width) * bytesPerPixel
                             + bytesPerPixel - 1, alpha);
@@ -503,7 +910,7 @@ public class Font
     public void print(ByteBuffer pixels, char c, int x, int y, int width,
             int bytesPerPixel)
     {
-        if (c < fontData.length && !fontData[c].isEmpty)
+        if (hasGlyph(c))
         {
             if (bytesPerPixel != 4)
                 printChar(pixels, c, getWidth(c), getXRec(c), x, y, width,
@@ -525,7 +932,7 @@ public class Font
     public void printFixedWidth(ByteBuffer pixels, char c, int x, int y,
             int width, int bytesPerPixel)
     {
-        if (c < fontData.length && !fontData[c].isEmpty)
+        if (hasGlyph(c))
         {
             if (bytesPerPixel != 4)
                 printChar(pixels, c, getWidth(), getXRecFixed(c), x, y, width,
@@ -552,14 +959,15 @@ public class Font
             int x, int y, int width, int bytesPerPixel, myColor fontColor,
             myColor backColor)
     {
+        Surface surface = getSurface(c);
         int h = getHeight();
         int yrec = getYRec(c);
 
         int startImage = (x + y * width) * bytesPerPixel;
-        int startFont = (xrec + yrec * surface.w) * bytesPerPixel;
+        int startFont = xrec + yrec * surface.w;
 
         int offset;
-        int offset2;
+        int pixel;
 
         byte res;
         int v;
@@ -570,10 +978,9 @@ public class Font
             for (int i = 0; i < w; i++)
             {
                 offset = startImage + (i + j * width) * bytesPerPixel;
-                offset2 = startFont + (i + j * surface.w) * bytesPerPixel;
+                pixel = startFont + i + j * surface.w;
 
-                v = unsignedToBytes(surface.pixels.get(offset2 + bytesPerPixel
-                        - 1));
+                v = getFontValue(surface, pixel, bytesPerPixel - 1, bytesPerPixel);
                 alpha = ((float) v / 255) * fontColor.a;
 
                 if (alpha == 0)
@@ -587,7 +994,7 @@ public class Font
                 {
                     for (int t = 0; t < bytesPerPixel; t++)
                     {
-                        v = unsignedToBytes(surface.pixels.get(offset2 + t));
+                        v = getFontValue(surface, pixel, t, bytesPerPixel);
                         res = (byte) (v * fontColor.get(t) * alpha + backColor
                                 .getInt(t) * backColor.a * (1 - alpha));
                         pixels.put(offset + t, res);
@@ -597,6 +1004,28 @@ public class Font
         }
     }
 
+    /**
+     * Read one byte of a font surface pixel
+     * Distance field pixels are read as white pixels covered by their
+     * distance to the edge
+     *
+     * @param surface       font surface
+     * @param pixel         index of the pixel
+     * @param t             byte of the pixel, the last one is alpha
+     * @param bytesPerPixel number of bytes per pixel of the rendered pixels
+     * @return byte value, from 0 to 255
+     */
+    private static int getFontValue(Surface surface, int pixel, int t, int bytesPerPixel)
+    {
+        if (surface.distanceSpread > 0)
+        {
+            if (t != bytesPerPixel - 1)
+                return 255;
+            return DistanceField.getCoverage(surface.pixels.get(pixel) & 0xFF, surface.distanceSpread);
+        }
+        return unsignedToBytes(surface.pixels.get(pixel * bytesPerPixel + t));
+    }
+
     public static int unsignedToBytes(byte b)
     {
         return b & 0xFF;
@@ -615,7 +1044,7 @@ public class Font
     public void printOptimized(ByteBuffer pixels, char c, int x, int y,
             int width, int bytesPerPixel, myColor fontColor, myColor backColor)
     {
-        if (c < fontData.length && (!fontData[c].isEmpty || backColor.a != 0))
+        if (getSurface(c) != null && (hasGlyph(c) || backColor.a != 0))
         {
             printCharOptimized(pixels, c, getWidth(c), getXRec(c), x, y, width,
                     bytesPerPixel, fontColor, backColor);
@@ -636,13 +1065,43 @@ public class Font
             int y, int width, int bytesPerPixel, myColor fontColor,
             myColor backColor)
     {
-        if (c < fontData.length && (!fontData[c].isEmpty || backColor.a != 0))
+        if (getSurface(c) != null && (hasGlyph(c) || backColor.a != 0))
         {
             printCharOptimized(pixels, c, getWidth(), getXRecFixed(c), x, y,
                     width, bytesPerPixel, fontColor, backColor);
         }
     }
 
+    /**
+     * Render one letter with blender colors
+     * @param blender render output and colors
+     * @param c letter
+     * @param x rendering position
+     * @param y rendering position
+     */
+    public void printOptimized(GlyphBlender blender, char c, int x, int y)
+    {
+        if (getSurface(c) != null && (hasGlyph(c) || blender.isBackVisible()))
+        {
+            blender.blit(getSurface(c), getXRec(c), getYRec(c), getWidth(c), getHeight(), x, y);
+        }
+    }
+
+    /**
+     * Render one letter with fixed width with blender colors
+     * @param blender render output and colors
+     * @param c letter
+     * @param x rendering position
+     * @param y rendering position
+     */
+    public void printFixedWidthOptimized(GlyphBlender blender, char c, int x, int y)
+    {
+        if (getSurface(c) != null && (hasGlyph(c) || blender.isBackVisible()))
+        {
+            blender.blit(getSurface(c), getXRecFixed(c), getYRec(c), getWidth(), getHeight(), x, y);
+        }
+    }
+
     /**
      *
      * @return font name
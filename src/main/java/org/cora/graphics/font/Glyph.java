@@ -0,0 +1,16 @@
+package org.cora.graphics.font;
+
+/**
+ * Holds letter data of a glyph rasterized in a glyph atlas
+ * left is the position of the visible pixels in the atlas page while the
+ * glyph is in the atlas
+ */
+public class Glyph extends FontData
+{
+    // Position of visible pixels in the rasterized cell
+    public int      offset;
+    public boolean  isRasterized;
+
+    // Place in the atlas, null if not in the atlas
+    GlyphAtlas.Slot slot;
+}
@@ -0,0 +1,407 @@
+package org.cora.graphics.font;
+
+import org.cora.graphics.graphics.Graphics;
+import org.cora.graphics.graphics.Surface;
+import org.cora.graphics.manager.TextureManager;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Pages of glyphs rasterized on demand, shared by true type fonts
+ * Pages are cut in shelves of one glyph height, shelves are cut in slots of
+ * one glyph width. Once pages are full, the least recently used glyph of the
+ * same size is replaced, or the least recently used shelf is cut again for
+ * the new size. Only modified parts of pages are uploaded in their textures.
+ * The batch and textures are only used on the thread of the default graphics.
+ */
+public class GlyphAtlas
+{
+    public final static int DEFAULT_PAGE_SIZE = 1024;
+    public final static int DEFAULT_MAX_PAGES = 2;
+
+    static class Page
+    {
+        Surface surface;
+        int     top;
+
+        // Modified part, empty if dirtyX1 is 0
+        int     dirtyX0, dirtyY0, dirtyX1, dirtyY1;
+
+        Page(int size, int index)
+        {
+            surface = new Surface();
+            surface.w = size;
+            surface.h = size;
+            surface.BytesPerPixel = 4;
+            surface.texture = -1;
+            surface.textureName = "glyph-atlas-" + index;
+            surface.pixels = BufferUtils.createByteBuffer(size * size * 4);
+            top = 0;
+        }
+    }
+
+    static class Shelf
+    {
+        Page    page;
+        int     y;
+        int     height;
+        int     slotWidth;
+        int     slotHeight;
+        Slot    slots[];
+        int     count;
+    }
+
+    static class Slot
+    {
+        Shelf   shelf;
+        int     x;
+        Glyph   glyph;
+        long    lastUse;
+    }
+
+    private int              pageSize;
+    private int              maxPages;
+    private ArrayList<Page>  pages;
+    private ArrayList<Shelf> shelves;
+    private long             clock;
+
+    private int              evictions;
+    private int              uploads;
+    private long             uploadedBytes;
+
+    public GlyphAtlas()
+    {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+
+    /**
+     * @param pageSize width and height of pages
+     * @param maxPages number of pages created before replacing glyphs
+     */
+    public GlyphAtlas(int pageSize, int maxPages)
+    {
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        pages = new ArrayList<Page>();
+        shelves = new ArrayList<Shelf>();
+    }
+
+    /**
+     * Find place for glyph, replacing least recently used glyphs if needed
+     *
+     * @param glyph glyph to place, its slot is set
+     * @param w     width of the glyph
+     * @param h     height of the glyph
+     *
+     * @return false if the glyph is bigger than a page
+     */
+    synchronized boolean allocate(Glyph glyph, int w, int h)
+    {
+        if (w > pageSize || h > pageSize)
+            return false;
+
+        Slot slot = findFree(w, h);
+        if (slot == null)
+            slot = addShelf(w, h);
+        if (slot == null)
+            slot = replaceSlot(w, h);
+        if (slot == null)
+            slot = replaceShelf(w, h);
+        if (slot == null)
+            return false;
+
+        slot.glyph = glyph;
+        glyph.slot = slot;
+        use(slot);
+        return true;
+    }
+
+    /**
+     * Mark glyph as used now
+     */
+    synchronized void use(Slot slot)
+    {
+        slot.lastUse = ++clock;
+    }
+
+    /**
+     * Copy rasterized glyph in its slot
+     *
+     * @param slot   slot of the glyph
+     * @param pixels ARGB pixels
+     * @param stride number of pixels in one row of pixels
+     */
+    synchronized void put(Slot slot, int[] pixels, int stride)
+    {
+        Shelf shelf = slot.shelf;
+        Page page = shelf.page;
+        ByteBuffer out = page.surface.pixels;
+        int w = shelf.slotWidth;
+        int h = shelf.slotHeight;
+
+        for (int y = 0; y < h; y++)
+        {
+            int offset = ((shelf.y + y) * pageSize + slot.x) * 4;
+            for (int x = 0; x < w; x++)
+            {
+                int pixel = pixels[y * stride + x];
+                out.put(offset++, (byte) (pixel >> 16));
+                out.put(offset++, (byte) (pixel >> 8));
+                out.put(offset++, (byte) pixel);
+                out.put(offset++, (byte) (pixel >>> 24));
+            }
+        }
+
+        if (page.dirtyX1 == 0)
+        {
+            page.dirtyX0 = slot.x;
+            page.dirtyY0 = shelf.y;
+            page.dirtyX1 = slot.x + w;
+            page.dirtyY1 = shelf.y + h;
+        }
+        else
+        {
+            page.dirtyX0 = Math.min(page.dirtyX0, slot.x);
+            page.dirtyY0 = Math.min(page.dirtyY0, shelf.y);
+            page.dirtyX1 = Math.max(page.dirtyX1, slot.x + w);
+            page.dirtyY1 = Math.max(page.dirtyY1, shelf.y + h);
+        }
+    }
+
+    /**
+     * Copy modified parts of pages in textures of the default graphics
+     * Does nothing without default graphics or out of its thread
+     */
+    public void upload()
+    {
+        TextureManager manager = TextureManager.getInstance();
+        if (manager.isGraphicsThread())
+            upload(manager.getDefaultGraphics());
+    }
+
+    /**
+     * Copy modified parts of pages in their textures
+     * @param g tool loading textures
+     */
+    public synchronized void upload(Graphics g)
+    {
+        for (Page page : pages)
+        {
+            if (page.dirtyX1 == 0)
+                continue;
+
+            if (page.surface.texture <= 0)
+            {
+                g.loadTextureGL(page.surface);
+                uploadedBytes += page.surface.getByteSize();
+            }
+            else
+            {
+                int w = page.dirtyX1 - page.dirtyX0;
+                int h = page.dirtyY1 - page.dirtyY0;
+                g.updateTextureGL(page.surface, page.dirtyX0, page.dirtyY0, w, h);
+                uploadedBytes += w * h * 4;
+            }
+            uploads++;
+            page.dirtyX1 = 0;
+        }
+    }
+
+    private Slot findFree(int w, int h)
+    {
+        for (Shelf shelf : shelves)
+        {
+            if (shelf.slotWidth == w && shelf.slotHeight == h && shelf.count < shelf.slots.length)
+                return addSlot(shelf);
+        }
+        return null;
+    }
+
+    private Slot addShelf(int w, int h)
+    {
+        Page page = null;
+        for (int i = 0; i < pages.size() && page == null; i++)
+        {
+            if (pages.get(i).top + h <= pageSize)
+                page = pages.get(i);
+        }
+
+        if (page == null)
+        {
+            if (pages.size() >= maxPages)
+                return null;
+            page = new Page(pageSize, pages.size());
+            pages.add(page);
+        }
+
+        Shelf shelf = new Shelf();
+        shelf.page = page;
+        shelf.y = page.top;
+        shelf.height = h;
+        page.top += h;
+        shelves.add(shelf);
+
+        cut(shelf, w, h);
+        return addSlot(shelf);
+    }
+
+    /**
+     * Replace least recently used glyph of the same size
+     */
+    private Slot replaceSlot(int w, int h)
+    {
+        Slot oldest = null;
+        for (Shelf shelf : shelves)
+        {
+            if (shelf.slotWidth != w || shelf.slotHeight != h)
+                continue;
+
+            for (int i = 0; i < shelf.count; i++)
+            {
+                if (oldest == null || shelf.slots[i].lastUse < oldest.lastUse)
+                    oldest = shelf.slots[i];
+            }
+        }
+
+        if (oldest != null)
+        {
+            beforeReplace();
+            remove(oldest);
+        }
+        return oldest;
+    }
+
+    /**
+     * Cut again least recently used shelf high enough for the new size
+     */
+    private Slot replaceShelf(int w, int h)
+    {
+        Shelf oldest = null;
+        long oldestUse = Long.MAX_VALUE;
+        for (Shelf shelf : shelves)
+        {
+            if (shelf.height < h)
+                continue;
+
+            long lastUse = 0;
+            for (int i = 0; i < shelf.count; i++)
+                lastUse = Math.max(lastUse, shelf.slots[i].lastUse);
+
+            if (lastUse < oldestUse)
+            {
+                oldest = shelf;
+                oldestUse = lastUse;
+            }
+        }
+
+        if (oldest == null)
+            return null;
+
+        beforeReplace();
+        for (int i = 0; i < oldest.count; i++)
+            remove(oldest.slots[i]);
+
+        cut(oldest, w, h);
+        return addSlot(oldest);
+    }
+
+    private void cut(Shelf shelf, int w, int h)
+    {
+        shelf.slotWidth = w;
+        shelf.slotHeight = h;
+        shelf.slots = new Slot[pageSize / w];
+        shelf.count = 0;
+    }
+
+    private Slot addSlot(Shelf shelf)
+    {
+        Slot slot = new Slot();
+        slot.shelf = shelf;
+        slot.x = shelf.count * shelf.slotWidth;
+        shelf.slots[shelf.count++] = slot;
+        return slot;
+    }
+
+    private void remove(Slot slot)
+    {
+        if (slot.glyph != null)
+        {
+            slot.glyph.slot = null;
+            slot.glyph = null;
+            evictions++;
+        }
+    }
+
+    /**
+     * Render glyphs waiting in the batch before their pixels are replaced
+     * Glyphs are only batched on the thread of the default graphics, the batch
+     * isn't touched from other threads
+     */
+    private void beforeReplace()
+    {
+        TextureManager manager = TextureManager.getInstance();
+        if (manager.isGraphicsThread())
+            manager.getDefaultGraphics().flushBatch();
+    }
+
+    /**
+     * @return pages holding glyphs
+     */
+    public ArrayList<Surface> getPages()
+    {
+        ArrayList<Surface> surfaces = new ArrayList<Surface>(pages.size());
+        for (Page page : pages)
+            surfaces.add(page.surface);
+        return surfaces;
+    }
+
+    /**
+     * @return number of glyphs in pages
+     */
+    public synchronized int getGlyphCount()
+    {
+        int count = 0;
+        for (Shelf shelf : shelves)
+        {
+            for (int i = 0; i < shelf.count; i++)
+            {
+                if (shelf.slots[i].glyph != null)
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    public int getMaxPages()
+    {
+        return maxPages;
+    }
+
+    public int getEvictions()
+    {
+        return evictions;
+    }
+
+    public int getUploads()
+    {
+        return uploads;
+    }
+
+    public long getUploadedBytes()
+    {
+        return uploadedBytes;
+    }
+
+    public String getStats()
+    {
+        return getGlyphCount() + " glyphs, " + pages.size() + "/" + maxPages + " pages, "
+                + evictions + " evictions, " + uploads + " uploads, " + (uploadedBytes >> 10) + " KB uploaded";
+    }
+}
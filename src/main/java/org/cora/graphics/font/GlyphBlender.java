@@ -0,0 +1,233 @@
+package org.cora.graphics.font;
+
+import org.cora.graphics.graphics.Surface;
+import org.cora.graphics.graphics.myColor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Render glyphs of a font surface in a RGBA buffer with text and back colors
+ * Colors are packed once, pixels are read and written as int and each row is
+ * written at once. Transparent pixels take the back color, opaque pixels of a
+ * white text are copied. Other pixels are blended once per pixel value, font
+ * surfaces use few different values. Result is the same as Font.printOptimized.
+ * Distance field surfaces are read as white glyphs covering pixels by their
+ * distance to the edge.
+ */
+public class GlyphBlender
+{
+    private final static int CACHE_BITS = 10;
+
+    private IntBuffer  dst;
+    private int        width;
+
+    private ByteBuffer srcPixels;
+    private IntBuffer  src;
+
+    private float      fontColor[];
+    private float      fontAlpha;
+    private int        backColor[];
+    private float      backAlpha;
+    private int        back;
+    private boolean    isWhite;
+
+    /**
+     * Blended pixels by glyph pixel, a glyph pixel of 0 is never blended
+     * so it marks empty entries
+     */
+    private int        keys[];
+    private int        values[];
+    private int        row[];
+
+    // Glyph pixels of distance field values
+    private int        fieldPixels[];
+    private int        fieldSpread;
+
+    /**
+     * @param pixels    RGBA render output
+     * @param width     width of the render output
+     * @param fontColor text color
+     * @param backColor background color
+     */
+    public GlyphBlender(ByteBuffer pixels, int width, myColor fontColor, myColor backColor)
+    {
+        this.dst = asIntBuffer(pixels);
+        this.width = width;
+
+        this.fontColor = new float[4];
+        this.backColor = new int[4];
+        back = 0;
+        for (int t = 0; t < 4; t++)
+        {
+            this.fontColor[t] = fontColor.get(t);
+            this.backColor[t] = backColor.getInt(t);
+            back |= (backColor.getByte(t) & 0xFF) << (t * 8);
+        }
+        fontAlpha = fontColor.a;
+        backAlpha = backColor.a;
+        isWhite = fontColor.r == 1 && fontColor.g == 1 && fontColor.b == 1 && fontColor.a == 1;
+
+        keys = new int[1 << CACHE_BITS];
+        values = new int[1 << CACHE_BITS];
+        row = new int[32];
+        fieldPixels = new int[256];
+        fieldSpread = 0;
+    }
+
+    /**
+     * Render part of the font surface
+     *
+     * @param surface RGBA font surface
+     * @param xrec    position of the glyph in the font surface
+     * @param yrec    position of the glyph in the font surface
+     * @param w       glyph width
+     * @param h       glyph height
+     * @param x       rendering position
+     * @param y       rendering position
+     */
+    public void blit(Surface surface, int xrec, int yrec, int w, int h, int x, int y)
+    {
+        boolean isField = surface.distanceSpread > 0;
+        IntBuffer src = isField ? null : getSource(surface);
+        if (isField)
+            getFieldPixels(surface.distanceSpread);
+        if (row.length < w)
+            row = new int[w];
+
+        for (int j = 0; j < h; j++)
+        {
+            if (isField)
+            {
+                int offset = xrec + (yrec + j) * surface.w;
+                for (int i = 0; i < w; i++)
+                    row[i] = fieldPixels[surface.pixels.get(offset + i) & 0xFF];
+            }
+            else
+            {
+                src.position(xrec + (yrec + j) * surface.w);
+                src.get(row, 0, w);
+            }
+
+            for (int i = 0; i < w; i++)
+            {
+                int pixel = row[i];
+                int a = pixel >>> 24;
+
+                if (a == 0 || fontAlpha == 0)
+                    row[i] = back;
+                else if (a != 255 || !isWhite)
+                    row[i] = blend(pixel, a);
+            }
+
+            dst.position(x + (y + j) * width);
+            dst.put(row, 0, w);
+        }
+    }
+
+    /**
+     * Fill rectangle with the back color
+     */
+    public void fill(int x, int y, int w, int h)
+    {
+        fill(x, y, w, h, back);
+    }
+
+    /**
+     * Make rectangle transparent, as pixels never rendered
+     */
+    public void clear(int x, int y, int w, int h)
+    {
+        fill(x, y, w, h, 0);
+    }
+
+    private void fill(int x, int y, int w, int h, int pixel)
+    {
+        if (w <= 0)
+            return;
+        if (row.length < w)
+            row = new int[w];
+        for (int i = 0; i < w; i++)
+            row[i] = pixel;
+
+        for (int j = 0; j < h; j++)
+        {
+            dst.position(x + (y + j) * width);
+            dst.put(row, 0, w);
+        }
+    }
+
+    /**
+     * @return width of the render output
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    public boolean isBackVisible()
+    {
+        return backAlpha != 0;
+    }
+
+    /**
+     * @return white pixels covered by the glyph by distance field value
+     */
+    private int[] getFieldPixels(int spread)
+    {
+        if (spread != fieldSpread)
+        {
+            fieldSpread = spread;
+            for (int v = 0; v < fieldPixels.length; v++)
+            {
+                fieldPixels[v] = (DistanceField.getCoverage(v, spread) << 24) | 0xFFFFFF;
+            }
+        }
+        return fieldPixels;
+    }
+
+    private IntBuffer getSource(Surface surface)
+    {
+        if (surface.pixels != srcPixels)
+        {
+            srcPixels = surface.pixels;
+            src = asIntBuffer(srcPixels);
+        }
+        return src;
+    }
+
+    /**
+     * @return view of all pixels, red in the lowest byte
+     */
+    private static IntBuffer asIntBuffer(ByteBuffer pixels)
+    {
+        ByteBuffer view = pixels.duplicate();
+        view.clear();
+        return view.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * Blend glyph pixel with colors, in the same float operations as the
+     * byte per byte rendering
+     */
+    private int blend(int pixel, int a)
+    {
+        int index = (pixel * 0x9E3779B9) >>> (32 - CACHE_BITS);
+        if (keys[index] == pixel)
+            return values[index];
+
+        float alpha = ((float) a / 255) * fontAlpha;
+        int result = 0;
+        for (int t = 0; t < 4; t++)
+        {
+            int v = (pixel >>> (t * 8)) & 0xFF;
+            byte res = (byte) (v * fontColor[t] * alpha + backColor[t] * backAlpha * (1 - alpha));
+            result |= (res & 0xFF) << (t * 8);
+        }
+
+        keys[index] = pixel;
+        values[index] = result;
+        return result;
+    }
+}
@@ -0,0 +1,29 @@
+package org.cora.graphics.font;
+
+import org.cora.graphics.graphics.Surface;
+
+/**
+ * Glyphs of 256 consecutive characters drawn in one font sheet
+ * Glyph of character c is in cell c % 256 of the sheet, cells have the size
+ * of the font and are read row by row.
+ */
+public class GlyphPage
+{
+    public final static int SIZE = 256;
+
+    public Surface  surface;
+    public int      cols;
+    public FontData data[];
+
+    /**
+     * @param surface sheet of glyphs, null if the page has no glyph
+     * @param cols    number of cells in one row of the sheet
+     * @param data    bounds of each glyph
+     */
+    public GlyphPage(Surface surface, int cols, FontData data[])
+    {
+        this.surface = surface;
+        this.cols = cols;
+        this.data = data;
+    }
+}
@@ -0,0 +1,19 @@
+package org.cora.graphics.font;
+
+import org.cora.graphics.graphics.Surface;
+
+/**
+ * Create sheets of glyphs for characters missing from the font surface
+ */
+public interface GlyphPageLoader
+{
+    /**
+     * Called once per page, the first time one of its characters is used
+     *
+     * @param font font missing the characters
+     * @param page index of the page, characters from page * 256 to page * 256 + 255
+     *
+     * @return RGBA sheet with cells of the font size, null if the page doesn't exist
+     */
+    Surface loadPage(Font font, int page);
+}
@@ -0,0 +1,124 @@
+package org.cora.graphics.font;
+
+/**
+ * Position of each character of a text measured by TextRenderer
+ * Character i is drawn from lefts[i] to rights[i], spacing between two letters
+ * is between rights[i - 1] and lefts[i]. Positions only increase, so width of
+ * any part of the text is a subtraction and positions are found by binary search.
+ * Tabs are expanded from the column of the character after the last new line,
+ * new lines have no width. Positions are in font pixels, without scale.
+ */
+public class MeasuredText
+{
+    public CharSequence text;
+    public int          lefts[];
+    public int          rights[];
+    public int          length;
+
+    public MeasuredText()
+    {
+        this(64);
+    }
+
+    /**
+     * @param capacity number of characters before growing arrays
+     */
+    public MeasuredText(int capacity)
+    {
+        lefts = new int[capacity];
+        rights = new int[capacity];
+        text = null;
+        length = 0;
+    }
+
+    /**
+     * Remove all characters and make room for length characters
+     * @param text measured text
+     */
+    public void reset(CharSequence text)
+    {
+        this.text = text;
+        length = 0;
+        if (text != null && text.length() > lefts.length)
+        {
+            int capacity = Math.max(text.length(), lefts.length * 2);
+            lefts = new int[capacity];
+            rights = new int[capacity];
+        }
+    }
+
+    /**
+     * @param start first character
+     * @param end   character after the last one
+     * @return width of characters from start to end excluded, as if start begins a line
+     */
+    public int getWidth(int start, int end)
+    {
+        if (end <= start)
+            return 0;
+        return rights[end - 1] - lefts[start];
+    }
+
+    /**
+     * @return width of the whole text
+     */
+    public int getWidth()
+    {
+        return getWidth(0, length);
+    }
+
+    /**
+     * @param x position from the left of the text
+     * @return index of the character under x, -1 if x is outside of characters
+     */
+    public int getIndexAt(float x)
+    {
+        // First character ending after x
+        int i = search(rights, 0, length, x);
+        if (i == length || x < lefts[i])
+            return -1;
+        return i;
+    }
+
+    /**
+     * @param x position from the left of the text
+     * @return offset of the nearest character boundary, from 0 to length
+     */
+    public int getCaretAt(float x)
+    {
+        int i = search(rights, 0, length, x);
+        if (i == length)
+            return length;
+        return (x < (lefts[i] + rights[i]) * 0.5f) ? i : i + 1;
+    }
+
+    /**
+     * @param start first character
+     * @param width available width
+     * @return largest end so that characters from start to end fit in width
+     */
+    public int fit(int start, float width)
+    {
+        if (start >= length)
+            return length;
+        return search(rights, start, length, lefts[start] + width);
+    }
+
+    /**
+     * @return first index in from to end excluded whose value is greater than x, end if none
+     */
+    private static int search(int[] values, int from, int end, float x)
+    {
+        int low = from;
+        int high = end;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (values[mid] <= x)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        return low;
+    }
+}
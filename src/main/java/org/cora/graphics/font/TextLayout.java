@@ -0,0 +1,100 @@
+package org.cora.graphics.font;
+
+/**
+ * Lines of a text once wrapped by TextRenderer
+ * Line i is the part of text from starts[i] to ends[i] excluded. Tabs are expanded
+ * to the next multiple of tab size, columns[i] is the column of the first character
+ * of the line. Arrays are reused when the layout is computed again.
+ */
+public class TextLayout
+{
+    public CharSequence text;
+    public int          starts[];
+    public int          ends[];
+    public int          columns[];
+    public int          widths[];
+    public Alignement   aligns[];
+    public int          count;
+
+    public TextLayout()
+    {
+        this(8);
+    }
+
+    /**
+     * @param capacity number of lines before growing arrays
+     */
+    public TextLayout(int capacity)
+    {
+        starts = new int[capacity];
+        ends = new int[capacity];
+        columns = new int[capacity];
+        widths = new int[capacity];
+        aligns = new Alignement[capacity];
+        text = null;
+        count = 0;
+    }
+
+    /**
+     * Remove all lines
+     * @param text wrapped text
+     */
+    public void reset(CharSequence text)
+    {
+        this.text = text;
+        count = 0;
+    }
+
+    /**
+     * Add line at the end
+     */
+    public void add(int start, int end, int column, int width, Alignement align)
+    {
+        if (count == starts.length)
+            grow(count * 2);
+
+        starts[count] = start;
+        ends[count] = end;
+        columns[count] = column;
+        widths[count] = width;
+        aligns[count] = align;
+        count++;
+    }
+
+    private void grow(int capacity)
+    {
+        int[] tmp = new int[capacity];
+        System.arraycopy(starts, 0, tmp, 0, count);
+        starts = tmp;
+
+        tmp = new int[capacity];
+        System.arraycopy(ends, 0, tmp, 0, count);
+        ends = tmp;
+
+        tmp = new int[capacity];
+        System.arraycopy(columns, 0, tmp, 0, count);
+        columns = tmp;
+
+        tmp = new int[capacity];
+        System.arraycopy(widths, 0, tmp, 0, count);
+        widths = tmp;
+
+        Alignement[] aligns = new Alignement[capacity];
+        System.arraycopy(this.aligns, 0, aligns, 0, count);
+        this.aligns = aligns;
+    }
+
+    /**
+     * @return width of the widest line
+     */
+    public int getMaxWidth()
+    {
+        int max = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (widths[i] > max)
+                max = widths[i];
+        }
+        return max;
+    }
+}
@@ -0,0 +1,190 @@
+package org.cora.graphics.font;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keep the layouts of the last wrapped texts
+ * The least recently used layout is removed once the capacity is reached.
+ * Layouts are kept by font and metrics version of the font, so layouts made
+ * before letters width changed are not used.
+ */
+public class TextLayoutCache
+{
+    public final static int DEFAULT_CAPACITY = 256;
+
+    /**
+     * Parameters changing the layout of a text
+     */
+    private static class Key
+    {
+        String     string;
+        Font       font;
+        int        metricsVersion;
+        int        maxWidth;
+        float      scale;
+        Alignement align;
+        int        tabSize;
+        int        spacing;
+        boolean    isProportional;
+        int        hash;
+
+        void set(String string, Font font, int maxWidth, float scale, Alignement align,
+                 int tabSize, int spacing, boolean isProportional)
+        {
+            this.string = string;
+            this.font = font;
+            this.metricsVersion = font.getMetricsVersion();
+            this.maxWidth = maxWidth;
+            this.scale = scale;
+            this.align = align;
+            this.tabSize = tabSize;
+            this.spacing = spacing;
+            this.isProportional = isProportional;
+
+            int h = string.hashCode();
+            h = h * 31 + System.identityHashCode(font);
+            h = h * 31 + metricsVersion;
+            h = h * 31 + maxWidth;
+            h = h * 31 + Float.floatToIntBits(scale);
+            h = h * 31 + align.ordinal();
+            h = h * 31 + tabSize;
+            h = h * 31 + spacing;
+            hash = h * 2 + ((isProportional) ? 1 : 0);
+        }
+
+        Key copy()
+        {
+            Key key = new Key();
+            key.string = string;
+            key.font = font;
+            key.metricsVersion = metricsVersion;
+            key.maxWidth = maxWidth;
+            key.scale = scale;
+            key.align = align;
+            key.tabSize = tabSize;
+            key.spacing = spacing;
+            key.isProportional = isProportional;
+            key.hash = hash;
+            return key;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+                return false;
+
+            Key k = (Key) o;
+            return hash == k.hash && font == k.font && metricsVersion == k.metricsVersion
+                    && maxWidth == k.maxWidth
+                    && scale == k.scale && align == k.align && tabSize == k.tabSize
+                    && spacing == k.spacing && isProportional == k.isProportional
+                    && string.equals(k.string);
+        }
+    }
+
+    private final int capacity;
+    private final LinkedHashMap<Key, TextLayout> layouts;
+    private final Key probe;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    public TextLayoutCache()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of layouts
+     */
+    public TextLayoutCache(int capacity)
+    {
+        this.capacity = capacity;
+        probe = new Key();
+        layouts = new LinkedHashMap<Key, TextLayout>(capacity * 4 / 3 + 1, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, TextLayout> eldest)
+            {
+                if (size() > TextLayoutCache.this.capacity)
+                {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get layout of text
+     *
+     * @param renderer renderer wrapping the text
+     * @param string text
+     * @param align alignment of text
+     *
+     * @return cached layout, computed if missing
+     */
+    public synchronized TextLayout get(TextRenderer renderer, String string, Alignement align)
+    {
+        probe.set(string, renderer.getFont(), renderer.getMaxWidth(), renderer.getScale(), align,
+                renderer.getTabSize(), renderer.getWordSpacing(), renderer.getProportional());
+
+        TextLayout layout = layouts.get(probe);
+        if (layout != null)
+        {
+            hits++;
+            return layout;
+        }
+
+        misses++;
+        layout = renderer.createLayout(string, align);
+        layouts.put(probe.copy(), layout);
+        return layout;
+    }
+
+    public synchronized void clear()
+    {
+        layouts.clear();
+    }
+
+    public synchronized int size()
+    {
+        return layouts.size();
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    public int getHits()
+    {
+        return hits;
+    }
+
+    public int getMisses()
+    {
+        return misses;
+    }
+
+    public int getEvictions()
+    {
+        return evictions;
+    }
+
+    public String getStats()
+    {
+        return size() + "/" + capacity + " layouts, " + hits + " hits, " + misses + " misses, "
+                + evictions + " evictions";
+    }
+}
@@ -1,16 +1,17 @@
 package org.cora.graphics.font;
 
 import org.cora.graphics.base.Image;
+import org.cora.graphics.base.Rect;
 import org.cora.graphics.graphics.Graphics;
+import org.cora.graphics.graphics.SpriteBatch;
 import org.cora.graphics.graphics.Surface;
 import org.cora.graphics.graphics.myColor;
 import org.cora.maths.Vector2D;
 import org.lwjgl.BufferUtils;
 
-import java.nio.ByteBuffer;
 import java.util.ArrayList;
-
-import static org.lwjgl.opengl.GL11.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Render text using font
@@ -21,6 +22,8 @@ public class TextRenderer implements Cloneable
     public static final int UNDERLINE = 95;
     public static final int DIST_SPACING = 5;
     public static final int VERTICAL_SPACING = 5;
+    public static final int PARALLEL_THRESHOLD = 256 * 256;
+    private static final int LINES_PER_TASK = 16;
 
     private Font font;
     private int maxWidth;
@@ -33,10 +36,29 @@ public class TextRenderer implements Cloneable
     private Alignement align;
     private float scale;
     private boolean isProportional;
+    private boolean isParallel;
     private TextPosition textPosition;
 
     private int x, y;
 
+    private static TextLayoutCache layoutCache = new TextLayoutCache();
+    private static final ThreadLocal<TextLayout> scratchLayout = new ThreadLocal<TextLayout>()
+    {
+        @Override
+        protected TextLayout initialValue()
+        {
+            return new TextLayout();
+        }
+    };
+    private static final ThreadLocal<MeasuredText> scratchMeasure = new ThreadLocal<MeasuredText>()
+    {
+        @Override
+        protected MeasuredText initialValue()
+        {
+            return new MeasuredText();
+        }
+    };
+
     /**
      * Create texteRenderer using font
      *
@@ -48,6 +70,7 @@ public class TextRenderer implements Cloneable
         fontColor = myColor.WHITE();
         backColor = myColor.BLACK(0);
         isProportional = true;
+        isParallel = false;
         distSpacing = DIST_SPACING;
         verticalSpacing = VERTICAL_SPACING;
         isUnderlined = false;
@@ -118,10 +141,6 @@ public class TextRenderer implements Cloneable
         if (string.length() == 0)
             return null;
 
-        ArrayList<String> strs = new ArrayList<String>();
-        ArrayList<Integer> widths = new ArrayList<Integer>();
-        ArrayList<Alignement> aligns = new ArrayList<Alignement>();
-
         Image text = new Image();
         Surface surface = new Surface();
 
@@ -139,30 +158,32 @@ public class TextRenderer implements Cloneable
             align = Alignement.LEFT;
         }
 
-        transformToStrs(string, strs, widths, aligns, align);
+        TextLayout layout = getLayout(string, align);
 
-        surface.h = strs.size() * (getHeight() + getVerticalSpacing());
+        surface.h = layout.count * (getHeight() + getVerticalSpacing());
         surface.BytesPerPixel = 4;
 
         if (align == Alignement.LEFT)
         {
-            surface.w = Integer.MIN_VALUE;
-            for (int i = 0; i < widths.size(); i++)
-            {
-                if (widths.get(i) > surface.w)
-                    surface.w = widths.get(i);
-            }
+            surface.w = layout.getMaxWidth();
         }
 
         surface.pixels = BufferUtils.createByteBuffer(surface.w * surface.h
                 * surface.BytesPerPixel);
         surface.textureName = font.getName() + "-image";
 
-        for (int i = 0; i < strs.size(); i++)
+        // Lines are written in different rows, they can be rendered at the same
+        // time unless a negative vertical spacing makes them overlap
+        if (isParallel && layout.count > LINES_PER_TASK && getVerticalSpacing() >= 0
+                && surface.w * surface.h >= PARALLEL_THRESHOLD && font.canPrintInParallel())
         {
-            printLine(surface.pixels, strs.get(i), x0, y0, widths.get(i), surface.w,
-                    aligns.get(i), surface.BytesPerPixel);
-            y0 += getVerticalSpacing() + font.getHeight();
+            // Pages of glyphs are loaded on this thread
+            font.loadPages(string);
+            ForkJoinPool.commonPool().invoke(new PrintLinesTask(surface, layout, 0, layout.count));
+        }
+        else
+        {
+            printLines(surface, layout, 0, layout.count);
         }
 
         text.initialize(surface);
@@ -190,159 +211,450 @@ public class TextRenderer implements Cloneable
     }
 
     /**
-     * @param string fullText
-     * @param strs   array of texts
-     * @param widths array of width
-     * @param aligns array of alignement
-     * @param align  align type
+     * Render changes of text in an image created by transformToImage with the
+     * same settings. In each changed line, characters are rendered again from
+     * the first different one; the rest of the image is kept.
+     *
+     * @param image    image of previous text
+     * @param previous text of the image
+     * @param string   new text
+     * @param dirty    changed part of the image, empty if nothing changed
+     *
+     * @return false if the image can't be reused because its size changed,
+     * it must be created again with transformToImage
      */
-    public void transformToStrs(String string, ArrayList<String> strs,
-                                ArrayList<Integer> widths, ArrayList<Alignement> aligns, Alignement align)
+    public boolean updateImage(Image image, String previous, String string, Rect dirty)
     {
-        if (string.length() == 0)
-            return;
+        dirty.set(0, 0, 0, 0);
+        if (image == null || previous == null || string.length() == 0
+                || getVerticalSpacing() < 0 || getWordSpacing() < 0)
+            return false;
+
+        Surface surface = image.getSpriteData().surface;
+        if (surface == null || surface.pixels == null)
+            return false;
+
+        Alignement align = (this.align != Alignement.LEFT && maxWidth != 0) ? this.align : Alignement.LEFT;
+        TextLayout old = getLayout(previous, align);
+        TextLayout layout = getLayout(string, align);
+
+        int w = (align == Alignement.LEFT) ? layout.getMaxWidth() : maxWidth;
+        int h = layout.count * (getHeight() + getVerticalSpacing());
+        if (old.count != layout.count || w != surface.w || h != surface.h)
+            return false;
+
+        GlyphBlender blender = new GlyphBlender(surface.pixels, surface.w, fontColor, backColor);
+        int lineHeight = getVerticalSpacing() + font.getHeight();
+        int left = surface.w;
+        int top = -1;
+        int bottom = 0;
+
+        for (int i = 0; i < layout.count; i++)
+        {
+            int from = getFirstChange(old, layout, i);
+            if (from == -1)
+                continue;
+
+            int y0 = i * lineHeight;
+            int x0 = printLine(blender, layout.text, layout.starts[i], layout.ends[i], layout.columns[i],
+                    0, y0, layout.widths[i], layout.aligns[i], from);
+
+            left = Math.min(left, x0);
+            if (top == -1)
+                top = y0;
+            bottom = y0 + font.getHeight();
+        }
 
-        float height = getFontHeight();
-        float maxWidth = this.maxWidth / scale;
+        if (top != -1 && left < surface.w)
+            dirty.set(left, top, surface.w - left, bottom - top);
+        return true;
+    }
 
-        if (maxWidth == 0)
+    /**
+     * @return index in new text of the first character of line i whose
+     * rendering changed, -1 if the line is the same
+     */
+    private static int getFirstChange(TextLayout old, TextLayout layout, int i)
+    {
+        int oldStart = old.starts[i];
+        int oldLength = old.ends[i] - oldStart;
+        int start = layout.starts[i];
+        int length = layout.ends[i] - start;
+
+        int same = 0;
+        int max = Math.min(oldLength, length);
+        while (same < max && old.text.charAt(oldStart + same) == layout.text.charAt(start + same))
+            same++;
+
+        boolean isSameStart = old.columns[i] == layout.columns[i] && old.aligns[i] == layout.aligns[i];
+        boolean isSameWidth = old.widths[i] == layout.widths[i];
+
+        if (isSameStart && isSameWidth && same == oldLength && same == length)
+            return -1;
+
+        // Position of the first letter and spacing depend on the line width
+        if (!isSameStart || (layout.aligns[i] != Alignement.LEFT && !isSameWidth))
+            return start;
+        if (layout.aligns[i] == Alignement.FULL)
+            return start;
+        return start + same;
+    }
+
+    /**
+     * Render lines from first to last excluded in the image
+     */
+    private void printLines(Surface surface, TextLayout layout, int first, int last)
+    {
+        GlyphBlender blender = new GlyphBlender(surface.pixels, surface.w, fontColor, backColor);
+        int y0 = first * (getVerticalSpacing() + font.getHeight());
+
+        for (int i = first; i < last; i++)
         {
-            String strsNL[] = string.split("\n");
-            String str;
+            printLine(blender, layout.text, layout.starts[i], layout.ends[i], layout.columns[i],
+                    0, y0, layout.widths[i], layout.aligns[i], -1);
+            y0 += getVerticalSpacing() + font.getHeight();
+        }
+    }
 
-            for (int i = 0; i < strsNL.length; i++)
+    /**
+     * Render lines by groups of LINES_PER_TASK
+     */
+    private class PrintLinesTask extends RecursiveAction
+    {
+        private final Surface surface;
+        private final TextLayout layout;
+        private final int first, last;
+
+        PrintLinesTask(Surface surface, TextLayout layout, int first, int last)
+        {
+            this.surface = surface;
+            this.layout = layout;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (last - first <= LINES_PER_TASK)
             {
-                str = strsNL[i];
-                widths.add(getWidth(strsNL[i]));
-                strs.add(str);
-                aligns.add(align);
+                printLines(surface, layout, first, last);
+                return;
             }
+
+            int middle = (first + last) >>> 1;
+            invokeAll(new PrintLinesTask(surface, layout, first, middle),
+                    new PrintLinesTask(surface, layout, middle, last));
         }
-        else
-        {
-            char c = ' ';
-            char lastC;
-            float spacing = getWordSpacing();
+    }
 
-            StringBuilder word = new StringBuilder();
-            StringBuilder sentence = new StringBuilder();
+    /**
+     * Get wrapped lines of text from the layout cache
+     *
+     * @param string text
+     * @param align  align type
+     *
+     * @return shared layout, must not be modified
+     */
+    public TextLayout getLayout(String string, Alignement align)
+    {
+        return layoutCache.get(this, string, align);
+    }
 
-            IntA widthWord = new IntA();
-            IntA width = new IntA();
-            widthWord.v = 0;
-            width.v = 0;
+    /**
+     * Wrap text without cache
+     *
+     * @param string text
+     * @param align  align type
+     *
+     * @return new layout
+     */
+    TextLayout createLayout(String string, Alignement align)
+    {
+        TextLayout layout = new TextLayout();
+        layout(string, align, layout);
+        return layout;
+    }
 
-            Alignement artificialAlign = (align == Alignement.FULL) ? Alignement.LEFT
-                    : align;
+    /**
+     * @return layouts shared by all text renderers
+     */
+    public static TextLayoutCache getLayoutCache()
+    {
+        return layoutCache;
+    }
 
-            for (int i = 0; i < string.length(); i++)
-            {
-                lastC = c;
-                c = string.charAt(i);
+    /**
+     * Split text in lines fitting in max width, lines are written in layout
+     * Nothing is allocated once the layout arrays are big enough
+     *
+     * @param text   text to wrap
+     * @param align  align type
+     * @param layout result, previous lines are removed
+     */
+    public void layout(CharSequence text, Alignement align, TextLayout layout)
+    {
+        layout.reset(text);
+
+        int length = text.length();
+        if (length == 0)
+            return;
+
+        int spaceWidth = getFontWidth(' ');
+        MeasuredText measured = scratchMeasure.get();
+        measure(text, measured);
 
-                switch (c)
+        if (maxWidth == 0)
+        {
+            // Only new lines break the text, empty lines at the end are ignored
+            int start = 0;
+            int lines = 0;
+            for (int i = 0; i <= length; i++)
+            {
+                if (i == length || text.charAt(i) == '\n')
                 {
-                    case ' ':
-                        flush(widthWord, width, word, sentence);
+                    layout.add(start, i, 0, measured.getWidth(start, i), align);
+                    if (i != start)
+                        lines = layout.count;
+                    start = i + 1;
+                }
+            }
+            layout.count = lines;
+            measured.reset(null);
+            return;
+        }
 
-                        word.append(' ');
-                        widthWord.v += getFontWidth(' ');
+        float maxWidth = this.maxWidth / scale;
+        Alignement lastAlign = (align == Alignement.FULL) ? Alignement.LEFT : align;
 
-                        if (width.v + widthWord.v >= maxWidth)
-                        {
-                            strs.add(removeStartEnd(sentence, width));
-                            widths.add(width.v);
-                            aligns.add(align);
+        // Sentence goes from sentenceStart to wordStart, word from wordStart to i
+        int sentenceStart = 0, sentenceColumns = 0, width = 0;
+        int wordStart = 0, wordColumns = 0, widthWord = 0;
 
-                            reset(width, sentence);
-                            reset(widthWord, word);
-                        }
+        for (int i = 0; i < length; i++)
+        {
+            switch (text.charAt(i))
+            {
+                case ' ':
+                    sentenceColumns += wordColumns;
+                    width += widthWord;
 
-                        flush(widthWord, width, word, sentence);
-                        break;
+                    if (width + spaceWidth >= maxWidth)
+                    {
+                        // The space is dropped between the two lines
+                        addLine(layout, sentenceStart, i, width, align);
+                        sentenceStart = i + 1;
+                        sentenceColumns = 0;
+                        width = 0;
+                    }
+                    else
+                    {
+                        sentenceColumns++;
+                        width += spaceWidth;
+                    }
 
-                    case '\n':
-                        flush(widthWord, width, word, sentence);
+                    wordStart = i + 1;
+                    wordColumns = 0;
+                    widthWord = 0;
+                    break;
 
-                        strs.add(removeStartEnd(sentence, width));
-                        widths.add(width.v);
-                        aligns.add(artificialAlign);
+                case '\n':
+                    addLine(layout, sentenceStart, i, width + widthWord, lastAlign);
+                    sentenceStart = wordStart = i + 1;
+                    sentenceColumns = wordColumns = 0;
+                    width = widthWord = 0;
+                    break;
 
-                        reset(width, sentence);
-                        y += height;
-                        break;
+                case '\t':
+                    sentenceColumns += wordColumns;
+                    width += widthWord;
+
+                    int rest = tabSize - (sentenceColumns % tabSize);
+                    if (width + spaceWidth * rest >= maxWidth)
+                    {
+                        // The tab starts the next line
+                        addLine(layout, sentenceStart, i, width, align);
+                        sentenceStart = i;
+                        sentenceColumns = 0;
+                        width = 0;
+                        rest = tabSize;
+                    }
 
-                    case '\t':
-                        flush(widthWord, width, word, sentence);
+                    sentenceColumns += rest;
+                    width += spaceWidth * rest;
+                    wordStart = i + 1;
+                    wordColumns = 0;
+                    widthWord = 0;
+                    break;
 
-                        int size = sentence.length();
-                        int rest = tabSize - size % tabSize;
+                default:
+                    int charWidth = measured.getWidth(i, i + 1);
+                    widthWord = measured.getWidth(wordStart, i + 1);
+                    wordColumns++;
 
-                        widthWord.v += getFontWidth(' ') * rest;
-                        for (int j = 0; j < rest; j++)
+                    if (widthWord + width >= maxWidth)
+                    {
+                        if (width == 0) // Le mot dépasse la taille max
                         {
-                            word.append('\t');
+                            // Cut the word before this letter, spacing before it is kept
+                            addLine(layout, sentenceStart, i, widthWord - charWidth, align);
+                            sentenceStart = wordStart = i;
+                            widthWord = charWidth;
+                            wordColumns = 1;
                         }
-                        if (width.v + widthWord.v >= maxWidth)
+                        else
                         {
-                            strs.add(removeStartEnd(sentence, width));
-                            widths.add(width.v);
-                            aligns.add(align);
-
-                            reset(width, sentence);
-                            y += height;
+                            addLine(layout, sentenceStart, wordStart, width, align);
+                            sentenceStart = wordStart;
                         }
+                        sentenceColumns = 0;
+                        width = 0;
+                    }
+                    break;
+            }
+        }
 
-                        flush(widthWord, width, word, sentence);
-                        break;
+        addLine(layout, sentenceStart, length, width + widthWord, lastAlign);
+        measured.reset(null);
+    }
 
-                    default:
-                        widthWord.v += getFontWidth(c);
-                        word.append(c);
+    /**
+     * Add line without spaces at the start and the end
+     */
+    private void addLine(TextLayout layout, int start, int end, int width, Alignement align)
+    {
+        CharSequence text = layout.text;
+        int spaceWidth = getFontWidth(' ');
+        int column = 0;
+
+        while (start < end && text.charAt(start) == ' ')
+        {
+            start++;
+            column++;
+            width -= spaceWidth;
+        }
+        while (end > start && text.charAt(end - 1) == ' ')
+        {
+            end--;
+            width -= spaceWidth;
+        }
 
-                        if (lastC != ' ' && lastC != '\n' && lastC != '\t')
-                            widthWord.v += spacing;
+        if (start == end)
+            width = 0;
 
-                        if (widthWord.v + width.v >= maxWidth)
-                        {
-                            if (width.v == 0) // Le mot dépasse la taille max
-                            {
-                                int tmp = getFontWidth(c);
-                                widthWord.v -= tmp;
-                                word.setLength(word.length() - 1);
-
-                                flush(widthWord, width, word, sentence);
-
-                                strs.add(removeStartEnd(sentence, width));
-                                widths.add(width.v);
-                                aligns.add(align);
-
-                                reset(width, sentence);
-
-                                widthWord.v += tmp;
-                                word.append(c);
-
-                                y += height;
-                            }
-                            else
-                            {
-                                strs.add(removeStartEnd(sentence, width));
-                                widths.add(width.v);
-                                aligns.add(align);
-
-                                reset(width, sentence);
-                                y += height;
-                            }
-                        }
-                        break;
+        layout.add(start, end, column, width, align);
+    }
+
+    /**
+     * Compute position of each character of text, nothing is allocated once
+     * the measured arrays are big enough
+     *
+     * @param text     text to measure
+     * @param measured result, previous characters are removed
+     */
+    public void measure(CharSequence text, MeasuredText measured)
+    {
+        int length = text.length();
+        measured.reset(text);
+
+        int[] lefts = measured.lefts;
+        int[] rights = measured.rights;
+        int spaceWidth = getFontWidth(' ');
+        int spacing = getWordSpacing();
+        int x = 0;
+        int column = 0;
+        char c = ' ';
+        char lastC;
+
+        for (int i = 0; i < length; i++)
+        {
+            lastC = c;
+            c = text.charAt(i);
+            switch (c)
+            {
+                case ' ':
+                    lefts[i] = x;
+                    x += spaceWidth;
+                    column++;
+                    break;
+                case '\n':
+                    lefts[i] = x;
+                    column = 0;
+                    break;
+                case '\t':
+                    lefts[i] = x;
+                    int rest = tabSize - column % tabSize;
+                    x += spaceWidth * rest;
+                    column += rest;
+                    break;
+                default:
+                    if (lastC != ' ' && lastC != '\n' && lastC != '\t')
+                        x += spacing;
+                    lefts[i] = x;
+                    x += getFontWidth(c);
+                    column++;
+                    break;
+            }
+            rights[i] = x;
+        }
+        measured.length = length;
+    }
+
+    /**
+     * Measure text in a new object
+     *
+     * @param text text to measure
+     *
+     * @return position of each character
+     */
+    public MeasuredText measure(CharSequence text)
+    {
+        MeasuredText measured = new MeasuredText(text.length());
+        measure(text, measured);
+        return measured;
+    }
+
+    /**
+     * @param string fullText
+     * @param strs   array of texts, tabs are replaced by one tab per column
+     * @param widths array of width
+     * @param aligns array of alignement
+     * @param align  align type
+     */
+    public void transformToStrs(String string, ArrayList<String> strs,
+                                ArrayList<Integer> widths, ArrayList<Alignement> aligns, Alignement align)
+    {
+        TextLayout layout = scratchLayout.get();
+        layout(string, align, layout);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < layout.count; i++)
+        {
+            int column = layout.columns[i];
+            sb.setLength(0);
+
+            for (int j = layout.starts[i]; j < layout.ends[i]; j++)
+            {
+                char c = string.charAt(j);
+                if (c == '\t')
+                {
+                    int rest = tabSize - column % tabSize;
+                    for (int k = 0; k < rest; k++)
+                        sb.append('\t');
+                    column += rest;
+                }
+                else
+                {
+                    sb.append(c);
+                    column++;
                 }
             }
 
-            flush(widthWord, width, word, sentence);
-            strs.add(removeStartEnd(sentence, width));
-            widths.add(width.v);
-            aligns.add(artificialAlign);
+            strs.add(sb.toString());
+            widths.add(layout.widths[i]);
+            aligns.add(layout.aligns[i]);
         }
+        layout.reset(null);
     }
 
     /**
@@ -353,182 +665,66 @@ public class TextRenderer implements Cloneable
      * @param x screen position
      * @param y screen position
      */
-    public void print(Graphics g, String string, int x, int y)
+    public void print(Graphics g, CharSequence string, int x, int y)
     {
         if (string.length() == 0)
             return;
 
-        float height = getVerticalSpacing() + getHeight();
-
-        float maxWidth = this.maxWidth / scale;
+        // All glyphs of the text are rendered with one draw call, or gathered
+        // with other texts if the batch is already started
+        boolean isBatching = g.getSpriteBatch().isDrawing();
+        if (!isBatching)
+            g.beginBatch();
 
-        if (maxWidth == 0)
+        // Strings are immutable, their layout can be cached
+        TextLayout layout;
+        if (string instanceof String)
         {
-            String strsNL[] = string.split("\n");
-            float width;
-            String str;
-
-            for (int i = 0; i < strsNL.length; i++)
-            {
-                str = strsNL[i];
-                width = getWidth(strsNL[i]);
-
-                int x0;
-                int y0;
-
-                switch (textPosition)
-                {
-                    case LEFT:
-                        x0 = x;
-                        break;
-                    case TOP_CENTER:
-                        x0 = (int) (x - width * 0.5f * scale);
-                        break;
-                    case RIGHT:
-                        x0 = (int) (x - width * scale);
-                        break;
-                    default:
-                        x0 = x;
-                }
-                y0 = y;
-
-                printLine(g, str, x0, y0, width, align);
-                y += height;
-            }
+            layout = getLayout((String) string, align);
         }
         else
         {
-            char c = ' ';
-            char lastC;
-            float spacing = getWordSpacing();
+            layout = scratchLayout.get();
+            layout(string, align, layout);
+        }
 
-            StringBuilder word = new StringBuilder();
-            StringBuilder sentence = new StringBuilder();
+        printLines(g, layout, x, y);
 
-            IntA widthWord = new IntA();
-            IntA width = new IntA();
-            widthWord.v = 0;
-            width.v = 0;
+        if (layout == scratchLayout.get())
+            layout.reset(null);
 
-            Alignement artificialAlign = (align == Alignement.FULL) ? Alignement.LEFT
-                    : align;
+        if (!isBatching)
+            g.endBatch();
+    }
 
-            for (int i = 0; i < string.length(); i++)
-            {
-                lastC = c;
-                c = string.charAt(i);
+    private void printLines(Graphics g, TextLayout layout, int x, int y)
+    {
+        float height = getVerticalSpacing() + getHeight();
 
-                switch (c)
+        for (int i = 0; i < layout.count; i++)
+        {
+            int x0 = x;
+            if (maxWidth == 0)
+            {
+                switch (textPosition)
                 {
-                    case ' ':
-                        flush(widthWord, width, word, sentence);
-
-                        word.append(' ');
-                        widthWord.v += getFontWidth(c);
-
-                        if (width.v + widthWord.v >= maxWidth)
-                        {
-                            printLine(g, removeStartEnd(sentence, width), x, y,
-                                    width.v, align);
-                            reset(width, sentence);
-                            reset(widthWord, word);
-                            y += height;
-                        }
-
-                        flush(widthWord, width, word, sentence);
-                        break;
-
-                    case '\n':
-                        flush(widthWord, width, word, sentence);
-                        printLine(g, removeStartEnd(sentence, width), x, y,
-                                width.v, artificialAlign);
-                        reset(width, sentence);
-                        y += height;
+                    case TOP_CENTER:
+                        x0 = (int) (x - layout.widths[i] * 0.5f * scale);
                         break;
-
-                    case '\t':
-                        flush(widthWord, width, word, sentence);
-
-                        int size = sentence.length();
-                        int rest = tabSize - size % tabSize;
-
-                        widthWord.v += getFontWidth(' ') * rest;
-                        for (int j = 0; j < rest; j++)
-                        {
-                            word.append('\t');
-                        }
-                        if (width.v + widthWord.v >= maxWidth)
-                        {
-                            printLine(g, removeStartEnd(sentence, width), x, y,
-                                    width.v, align);
-                            reset(width, sentence);
-                            y += height;
-                        }
-
-                        flush(widthWord, width, word, sentence);
+                    case RIGHT:
+                        x0 = (int) (x - layout.widths[i] * scale);
                         break;
-
                     default:
-                        widthWord.v += getFontWidth(c);
-                        word.append(c);
-
-                        if (lastC != ' ' && lastC != '\n' && lastC != '\t')
-                            widthWord.v += spacing;
-
-                        if (widthWord.v + width.v >= maxWidth)
-                        {
-                            if (width.v == 0 && widthWord.v != 0) // Le mot dépasse la taille max
-                            {
-                                int tmp = getFontWidth(c);
-                                widthWord.v -= tmp;
-                                word.setLength(word.length() - 1);
-
-                                flush(widthWord, width, word, sentence);
-                                printLine(g, removeStartEnd(sentence, width),
-                                        x, y, width.v, align);
-                                reset(width, sentence);
-
-                                widthWord.v += tmp;
-                                word.append(c);
-
-                                y += height;
-                            }
-                            else
-                            {
-                                printLine(g, removeStartEnd(sentence, width),
-                                        x, y, width.v, align);
-                                reset(width, sentence);
-                                y += height;
-                            }
-                        }
                         break;
                 }
             }
 
-            flush(widthWord, width, word, sentence);
-            printLine(g, removeStartEnd(sentence, width), x, y, width.v,
-                    artificialAlign);
+            printLine(g, layout.text, layout.starts[i], layout.ends[i], layout.columns[i],
+                    x0, y, layout.widths[i], layout.aligns[i]);
+            y += height;
         }
     }
 
-    private void flush(IntA widthWord, IntA width, StringBuilder word,
-                       StringBuilder sentence)
-    {
-        if (widthWord.v == 0)
-            return;
-
-        sentence.append(word);
-        word.setLength(0);
-        width.v += widthWord.v;
-        widthWord.v = 0;
-    }
-
-    private void reset(IntA width, StringBuilder sentence)
-    {
-        sentence.setLength(0);
-        width.v = 0;
-    }
-
     /**
      * Remove space at the end and the start of the text
      * @param sb text
@@ -566,8 +762,44 @@ public class TextRenderer implements Cloneable
         return sb.substring(start, end);
     }
 
-    private void printLine(ByteBuffer pixels, String string, int x, int y,
-                           int width, int surfaceWidth, Alignement alignement, int bytePerPixel)
+    /**
+     * @return number of space columns of the line, tabs count for each column
+     */
+    private int countSpaces(CharSequence text, int start, int end, int column)
+    {
+        int nSpace = 0;
+        for (int i = start; i < end; i++)
+        {
+            char c = text.charAt(i);
+            if (c == ' ')
+            {
+                nSpace++;
+                column++;
+            }
+            else if (c == '\t')
+            {
+                int rest = tabSize - column % tabSize;
+                nSpace += rest;
+                column += rest;
+            }
+            else
+            {
+                column++;
+            }
+        }
+        return nSpace;
+    }
+
+    /**
+     * Render line in an image
+     *
+     * @param from index of the first rendered character, the rest of the line
+     *             is cleared before. -1 to render all characters without clearing
+     *
+     * @return left of the cleared part, the whole width if nothing was cleared
+     */
+    private int printLine(GlyphBlender blender, CharSequence text, int start, int end, int column,
+                           int x, int y, int width, Alignement alignement, int from)
     {
         float x0, y0;
         float distSpace = getFontWidth(' ');
@@ -581,18 +813,7 @@ public class TextRenderer implements Cloneable
                 break;
             case FULL:
                 x0 = x;
-                int nSpace = 0;
-                for (int i = 0; i < string.length(); i++)
-                {
-                    if (string.charAt(i) == ' ')
-                    {
-                        nSpace++;
-                    }
-                    else if (string.charAt(i) == '\t')
-                    {
-                        nSpace++;
-                    }
-                }
+                int nSpace = countSpaces(text, start, end, column);
                 float rest = maxWidth / scale - width;
                 if (rest > 0)
                 {
@@ -600,7 +821,7 @@ public class TextRenderer implements Cloneable
                     {
                         distSpace = (float) (rest) / nSpace + distSpace;
                     }
-                    else if ((nSpace = string.length() - 1) != 0)
+                    else if ((nSpace = end - start - 1) != 0)
                     {
                         distWord = (float) (rest) / nSpace + distWord;
                     }
@@ -617,84 +838,83 @@ public class TextRenderer implements Cloneable
                 break;
         }
 
-        if (isProportional)
-        {
-            char c = ' ';
-            char lastC;
+        char c = ' ';
+        char lastC;
+        boolean isDrawn = from < 0;
+        int cleared = blender.getWidth();
 
-            for (int i = 0; i < string.length(); i++)
+        for (int i = start; i < end; i++)
+        {
+            if (i == from)
             {
-                lastC = c;
-                c = string.charAt(i);
-                switch (c)
-                {
-                    case ' ':
-                        if (isBackVisible())
-                            font.printSquare(pixels, (int) x0, (int) y0, (int) distSpace, getFontHeight(), surfaceWidth, bytePerPixel, backColor);
-                        x0 += distSpace;
-                        break;
-                    case '\t':
-                        if (isBackVisible())
-                            font.printSquare(pixels, (int) x0, (int) y0, (int) distSpace, getFontHeight(), surfaceWidth, bytePerPixel, backColor);
-                        x0 += distSpace;
-                        break;
-                    default:
-                        if (lastC != ' ' && lastC != '\n' && lastC != '\t')
-                        {
-                            if (isBackVisible())
-                                font.printSquare(pixels, (int) x0, (int) y0, (int) distWord, getFontHeight(), surfaceWidth, bytePerPixel, backColor);
-                            x0 += distWord;
-                        }
-
-
-                        //font.print(pixels, c, (int) x0, (int) y0, surfaceWidth, 4);
-                        font.printOptimized(pixels, c, (int) x0, (int) y0,
-                                surfaceWidth, bytePerPixel, fontColor, backColor);
-                        x0 += getProportionalWidth(c);
-                        break;
-                }
+                // Previous line may start elsewhere if the whole line changed
+                cleared = clearLine(blender, (i == start) ? x : (int) x0, (int) y0);
+                isDrawn = true;
             }
-        }
-        else
-        {
-            char c = ' ';
-            char lastC;
 
-            for (int i = 0; i < string.length(); i++)
+            lastC = c;
+            c = text.charAt(i);
+            switch (c)
             {
-                lastC = c;
-                c = string.charAt(i);
-                switch (c)
-                {
-                    case ' ':
-                        if (isBackVisible())
-                            font.printSquare(pixels, (int) x0, (int) y0, (int) distSpace, getFontHeight(), surfaceWidth, bytePerPixel, backColor);
-                        x0 += distSpace;
-                        break;
-                    case '\t':
-                        if (isBackVisible())
-                            font.printSquare(pixels, (int) x0, (int) y0, (int) distSpace, getFontHeight(), surfaceWidth, bytePerPixel, backColor);
+                case ' ':
+                    if (isDrawn && isBackVisible())
+                        blender.fill((int) x0, (int) y0, (int) distSpace, getFontHeight());
+                    x0 += distSpace;
+                    column++;
+                    break;
+                case '\t':
+                    for (int rest = tabSize - column % tabSize; rest > 0; rest--)
+                    {
+                        if (isDrawn && isBackVisible())
+                            blender.fill((int) x0, (int) y0, (int) distSpace, getFontHeight());
                         x0 += distSpace;
-                        break;
-                    default:
-                        if (lastC != ' ' && lastC != '\n' && lastC != '\t')
-                        {
-                            if (isBackVisible())
-                                font.printSquare(pixels, (int) x0, (int) y0, (int) distWord, getFontHeight(), surfaceWidth, bytePerPixel, backColor);
-                            x0 += distWord;
-                        }
-                        font.printFixedWidthOptimized(pixels, c, (int) x0,
-                                (int) y0, surfaceWidth, bytePerPixel, fontColor,
-                                backColor);
+                        column++;
+                    }
+                    break;
+                default:
+                    if (lastC != ' ' && lastC != '\n' && lastC != '\t')
+                    {
+                        if (isDrawn && isBackVisible())
+                            blender.fill((int) x0, (int) y0, (int) distWord, getFontHeight());
+                        x0 += distWord;
+                    }
+
+                    if (isProportional)
+                    {
+                        if (isDrawn)
+                            font.printOptimized(blender, c, (int) x0, (int) y0);
+                        x0 += getProportionalWidth(c);
+                    }
+                    else
+                    {
+                        if (isDrawn)
+                            font.printFixedWidthOptimized(blender, c, (int) x0, (int) y0);
                         x0 += getFontWidth();
-                        break;
-                }
+                    }
+                    column++;
+                    break;
             }
         }
+
+        // Characters were removed at the end of the line
+        if (!isDrawn)
+            cleared = clearLine(blender, (from == start) ? x : (int) x0, (int) y0);
+        return cleared;
     }
 
-    private void printLine(Graphics g, String string, int x, int y,
-                           float width, Alignement alignement)
+    /**
+     * Clear line from x to the right of the image
+     * @return x
+     */
+    private int clearLine(GlyphBlender blender, int x, int y)
+    {
+        x = Math.max(0, Math.min(x, blender.getWidth()));
+        blender.clear(x, y, blender.getWidth() - x, font.getHeight());
+        return x;
+    }
+
+    private void printLine(Graphics g, CharSequence text, int start, int end, int column,
+                           int x, int y, float width, Alignement alignement)
     {
         float x0, y0;
         float distSpace = getFontWidth(' ');
@@ -722,18 +942,7 @@ public class TextRenderer implements Cloneable
             case LEFT:
                 break;
             case FULL:
-                int nSpace = 0;
-                for (int i = 0; i < string.length(); i++)
-                {
-                    if (string.charAt(i) == ' ')
-                    {
-                        nSpace++;
-                    }
-                    else if (string.charAt(i) == '\t')
-                    {
-                        nSpace++;
-                    }
-                }
+                int nSpace = countSpaces(text, start, end, column);
                 float rest = maxWidth / scale - width;
                 if (rest > 0)
                 {
@@ -741,7 +950,7 @@ public class TextRenderer implements Cloneable
                     {
                         distSpace = (float) (rest) / nSpace + distSpace;
                     }
-                    else if ((nSpace = string.length() - 1) != 0)
+                    else if ((nSpace = end - start - 1) != 0)
                     {
                         distWord = (float) (rest) / nSpace + distWord;
                     }
@@ -758,73 +967,54 @@ public class TextRenderer implements Cloneable
                 break;
         }
 
-        glPushMatrix();
-        glTranslatef(x0, y0, 0);
-
-        x0 = 0;
-        y0 = 0;
-        glScalef(scale, scale, 1.0f);
-
         if (isBackVisible())
         {
+            g.pushMatrix();
+            g.translate(x0, y0);
+            g.scale(scale);
             g.setColor(backColor);
             g.fillRec(0, 0, (int) width, getFontHeight());
+            g.popMatrix();
         }
-
+        // Glyphs have their own color, graphics is still left with the font color
         g.setColor(fontColor);
-        if (isProportional)
-        {
-            char c = ' ';
-            char lastC;
 
-            for (int i = 0; i < string.length(); i++)
-            {
-                lastC = c;
-                c = string.charAt(i);
-                switch (c)
-                {
-                    case ' ':
-                        x0 += distSpace;
-                        break;
-                    case '\t':
-                        x0 += distSpace;
-                        break;
-                    default:
-                        if (lastC != ' ' && lastC != '\n' && lastC != '\t')
-                            x0 += distWord;
-                        font.print(g, c, (int) (x0), (int) y0);
-                        x0 += getFontWidth(c);
-                        break;
-                }
-            }
-        }
-        else
-        {
-            char c = ' ';
-            char lastC;
+        // Glyphs are positioned and scaled on the CPU and gathered in the batch
+        SpriteBatch batch = g.getSpriteBatch();
+        float left = x0;
+        float top = y0;
+        x0 = 0;
+
+        char c = ' ';
+        char lastC;
 
-            for (int i = 0; i < string.length(); i++)
+        for (int i = start; i < end; i++)
+        {
+            lastC = c;
+            c = text.charAt(i);
+            switch (c)
             {
-                lastC = c;
-                c = string.charAt(i);
-                switch (c)
-                {
-                    case ' ':
-                        x0 += distSpace;
-                        break;
-                    case '\t':
-                        x0 += distSpace;
-                        break;
-                    default:
-                        if (lastC != ' ' && lastC != '\n' && lastC != '\t')
-                            x0 += distWord;
-                        font.printFixedWidth(g, c, (int) x0, (int) y0, scale);
-                        x0 += getFontWidth(c);
-                        break;
-                }
+                case ' ':
+                    x0 += distSpace;
+                    column++;
+                    break;
+                case '\t':
+                    int tab = tabSize - column % tabSize;
+                    x0 += distSpace * tab;
+                    column += tab;
+                    break;
+                default:
+                    if (lastC != ' ' && lastC != '\n' && lastC != '\t')
+                        x0 += distWord;
+                    if (isProportional)
+                        font.print(batch, c, left + ((int) x0) * scale, top, scale, fontColor);
+                    else
+                        font.printFixedWidth(batch, c, left + ((int) x0) * scale, top, scale, fontColor);
+                    x0 += getFontWidth(c);
+                    column++;
+                    break;
             }
         }
-        glPopMatrix();
     }
 
     // Getter - Setter
@@ -1040,6 +1230,26 @@ public class TextRenderer implements Cloneable
         return backColor;
     }
 
+    /**
+     * @param other renderer, usually a clone made when an image was rendered
+     * @return both renderers create the same text images
+     */
+    public boolean hasSameRendering(TextRenderer other)
+    {
+        return font == other.font && maxWidth == other.maxWidth
+                && isSameColor(fontColor, other.fontColor) && isSameColor(backColor, other.backColor)
+                && distSpacing == other.distSpacing && verticalSpacing == other.verticalSpacing
+                && isUnderlined == other.isUnderlined && tabSize == other.tabSize
+                && align == other.align && scale == other.scale
+                && isProportional == other.isProportional && textPosition == other.textPosition
+                && x == other.x && y == other.y;
+    }
+
+    private static boolean isSameColor(myColor c1, myColor c2)
+    {
+        return c1.r == c2.r && c1.g == c2.g && c1.b == c2.b && c1.a == c2.a;
+    }
+
     public boolean isFontVisible()
     {
         return fontColor.a != 0;
@@ -1060,6 +1270,20 @@ public class TextRenderer implements Cloneable
         return isProportional;
     }
 
+    /**
+     * @param p render lines of big text images on several threads, if the
+     * font allows it
+     */
+    public void setParallel(boolean p)
+    {
+        isParallel = p;
+    }
+
+    public boolean getParallel()
+    {
+        return isParallel;
+    }
+
     public void setProportionalSpacing(int d)
     {
         distSpacing = d;
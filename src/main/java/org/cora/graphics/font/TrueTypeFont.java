@@ -0,0 +1,366 @@
+package org.cora.graphics.font;
+
+import org.cora.graphics.graphics.Graphics;
+import org.cora.graphics.graphics.SpriteBatch;
+import org.cora.graphics.graphics.Surface;
+import org.cora.graphics.graphics.myColor;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Font rasterized from a java.awt.Font when characters are used
+ * Glyphs are drawn in white in cells of the font size and kept in a glyph
+ * atlas, they are drawn again if the atlas replaced them. Any character the
+ * java font can display is available, without font sheet.
+ */
+public class TrueTypeFont extends Font
+{
+    private java.awt.Font awtFont;
+    private GlyphAtlas    atlas;
+    private int           ascent;
+
+    private Glyph         glyphs[][];
+
+    // Cell where glyphs are drawn
+    private BufferedImage cell;
+    private Graphics2D    graphics;
+    private FontMetrics   metrics;
+    private int           cellPixels[];
+
+    /**
+     * @param awtFont font with its size
+     * @param atlas   atlas receiving glyphs
+     */
+    public TrueTypeFont(java.awt.Font awtFont, GlyphAtlas atlas)
+    {
+        this(awtFont, atlas, getMetrics(awtFont));
+    }
+
+    private TrueTypeFont(java.awt.Font awtFont, GlyphAtlas atlas, FontMetrics metrics)
+    {
+        super(getCellWidth(metrics), metrics.getAscent() + metrics.getDescent());
+        this.awtFont = awtFont;
+        this.atlas = atlas;
+        this.metrics = metrics;
+        ascent = metrics.getAscent();
+        glyphs = new Glyph[256][];
+
+        cell = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_ARGB);
+        cellPixels = ((DataBufferInt) cell.getRaster().getDataBuffer()).getData();
+        graphics = cell.createGraphics();
+        graphics.setFont(awtFont);
+        graphics.setColor(Color.WHITE);
+        graphics.setComposite(AlphaComposite.SrcOver);
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
+                RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+
+        setName(awtFont.getFontName() + "-" + awtFont.getSize());
+    }
+
+    private static FontMetrics getMetrics(java.awt.Font awtFont)
+    {
+        BufferedImage image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING,
+                RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS,
+                RenderingHints.VALUE_FRACTIONALMETRICS_OFF);
+        FontMetrics metrics = g.getFontMetrics(awtFont);
+        g.dispose();
+        return metrics;
+    }
+
+    private static int getCellWidth(FontMetrics metrics)
+    {
+        int width = metrics.getMaxAdvance();
+        return (width > 0) ? width : Math.max(1, metrics.charWidth('W'));
+    }
+
+    /**
+     * @param c letter
+     * @return glyph of the letter, placed in the atlas if it has visible pixels
+     */
+    @Override
+    protected FontData getData(char c)
+    {
+        Glyph glyph = getGlyph(c);
+        if (!glyph.isRasterized || (!glyph.isEmpty && glyph.slot == null))
+        {
+            rasterize(glyph, c);
+        }
+        else if (!glyph.isEmpty)
+        {
+            GlyphAtlas.Slot slot = glyph.slot;
+            if (slot != null)
+                atlas.use(slot);
+        }
+        return glyph;
+    }
+
+    private Glyph getGlyph(char c)
+    {
+        Glyph block[] = glyphs[c >> 8];
+        if (block == null)
+            block = createBlock(c >> 8);
+        return block[c & 0xFF];
+    }
+
+    private synchronized Glyph[] createBlock(int index)
+    {
+        if (glyphs[index] != null)
+            return glyphs[index];
+
+        Glyph block[] = new Glyph[256];
+        for (int i = 0; i < block.length; i++)
+            block[i] = new Glyph();
+        glyphs[index] = block;
+        return block;
+    }
+
+    /**
+     * Draw glyph and copy it in the atlas, bounds are computed the first time
+     */
+    private synchronized void rasterize(Glyph glyph, char c)
+    {
+        if (glyph.isRasterized && (glyph.isEmpty || glyph.slot != null))
+            return;
+
+        if (!awtFont.canDisplay(c))
+        {
+            glyph.isEmpty = true;
+            glyph.width = 0;
+            glyph.isRasterized = true;
+            return;
+        }
+
+        int width = getWidth();
+        int height = getHeight();
+        Arrays.fill(cellPixels, 0);
+        graphics.drawChars(new char[]{c}, 0, 1, 0, ascent);
+
+        if (!glyph.isRasterized)
+        {
+            computeBound(glyph, width, height);
+            if (glyph.isEmpty)
+                glyph.width = metrics.charWidth(c);
+            glyph.isRasterized = true;
+        }
+
+        if (glyph.isEmpty)
+            return;
+
+        if (!atlas.allocate(glyph, width, height))
+        {
+            System.out.println("Glyph " + (int) c + " of " + getName() + " is bigger than atlas pages");
+            glyph.isEmpty = true;
+            return;
+        }
+
+        atlas.put(glyph.slot, cellPixels, width);
+        glyph.left = glyph.slot.x + glyph.offset;
+    }
+
+    /**
+     * Compute real length of the drawn letter
+     */
+    private void computeBound(Glyph glyph, int width, int height)
+    {
+        glyph.offset = 0;
+        glyph.width = width;
+        glyph.isEmpty = true;
+
+        col:
+        for (int x = 0; x < width; x++)
+        {
+            for (int y = 0; y < height; y++)
+            {
+                if ((cellPixels[x + y * width] >>> 24) != 0)
+                {
+                    glyph.isEmpty = false;
+                    glyph.width = x - glyph.offset + 1;
+                    continue col;
+                }
+            }
+
+            if (x == glyph.offset)
+                glyph.offset = x + 1;
+        }
+    }
+
+    @Override
+    public int getXRecFixed(char c)
+    {
+        GlyphAtlas.Slot slot = ((Glyph) getData(c)).slot;
+        return (slot == null) ? 0 : slot.x;
+    }
+
+    @Override
+    public int getYRec(char c)
+    {
+        GlyphAtlas.Slot slot = ((Glyph) getData(c)).slot;
+        return (slot == null) ? 0 : slot.shelf.y;
+    }
+
+    @Override
+    public Surface getSurface(char c)
+    {
+        GlyphAtlas.Slot slot = ((Glyph) getData(c)).slot;
+        return (slot == null) ? null : slot.shelf.page.surface;
+    }
+
+    /**
+     * Place glyphs of all characters of text in the atlas now
+     *
+     * @param text used characters
+     */
+    @Override
+    public void loadPages(CharSequence text)
+    {
+        for (int i = 0; i < text.length(); i++)
+            getData(text.charAt(i));
+    }
+
+    /**
+     * Glyphs can be replaced in the atlas while they are rendered, text is
+     * rendered by one thread
+     */
+    @Override
+    public boolean canPrintInParallel()
+    {
+        return false;
+    }
+
+    @Override
+    public void setSpaceSize(int width)
+    {
+        getData(' ').width = width;
+        metricsChanged();
+    }
+
+    @Override
+    public void print(Graphics g, char c, int x, int y, float scale)
+    {
+        if (hasGlyph(c))
+        {
+            atlas.upload(g);
+            super.print(g, c, x, y, scale);
+        }
+    }
+
+    @Override
+    public void printFixedWidth(Graphics g, char c, int x, int y, float scale)
+    {
+        if (hasGlyph(c))
+        {
+            atlas.upload(g);
+            super.printFixedWidth(g, c, x, y, scale);
+        }
+    }
+
+    @Override
+    public void print(Graphics g, char c, int x, int y)
+    {
+        if (hasGlyph(c))
+        {
+            atlas.upload(g);
+            super.print(g, c, x, y);
+        }
+    }
+
+    @Override
+    public void printFixedWidth(Graphics g, char c, int x, int y)
+    {
+        if (hasGlyph(c))
+        {
+            atlas.upload(g);
+            super.printFixedWidth(g, c, x, y);
+        }
+    }
+
+    @Override
+    public void print(SpriteBatch batch, char c, float x, float y, float scale,
+            myColor color)
+    {
+        if (hasGlyph(c))
+        {
+            atlas.upload();
+            super.print(batch, c, x, y, scale, color);
+        }
+    }
+
+    @Override
+    public void printFixedWidth(SpriteBatch batch, char c, float x, float y,
+            float scale, myColor color)
+    {
+        if (hasGlyph(c))
+        {
+            atlas.upload();
+            super.printFixedWidth(batch, c, x, y, scale, color);
+        }
+    }
+
+    @Override
+    public void printOptimized(ByteBuffer pixels, char c, int x, int y,
+            int width, int bytesPerPixel, myColor fontColor, myColor backColor)
+    {
+        if (hasGlyph(c))
+            super.printOptimized(pixels, c, x, y, width, bytesPerPixel, fontColor, backColor);
+        else if (backColor.a != 0)
+            printSquare(pixels, x, y, getWidth(c), getHeight(), width, bytesPerPixel, backColor);
+    }
+
+    @Override
+    public void printFixedWidthOptimized(ByteBuffer pixels, char c, int x,
+            int y, int width, int bytesPerPixel, myColor fontColor,
+            myColor backColor)
+    {
+        if (hasGlyph(c))
+            super.printFixedWidthOptimized(pixels, c, x, y, width, bytesPerPixel, fontColor, backColor);
+        else if (backColor.a != 0)
+            printSquare(pixels, x, y, getWidth(), getHeight(), width, bytesPerPixel, backColor);
+    }
+
+    @Override
+    public void printOptimized(GlyphBlender blender, char c, int x, int y)
+    {
+        if (hasGlyph(c))
+            super.printOptimized(blender, c, x, y);
+        else if (blender.isBackVisible())
+            blender.fill(x, y, getWidth(c), getHeight());
+    }
+
+    @Override
+    public void printFixedWidthOptimized(GlyphBlender blender, char c, int x, int y)
+    {
+        if (hasGlyph(c))
+            super.printFixedWidthOptimized(blender, c, x, y);
+        else if (blender.isBackVisible())
+            blender.fill(x, y, getWidth(), getHeight());
+    }
+
+    public java.awt.Font getAwtFont()
+    {
+        return awtFont;
+    }
+
+    public GlyphAtlas getAtlas()
+    {
+        return atlas;
+    }
+
+    @Override
+    public String getStats()
+    {
+        return getName() + ": " + atlas.getStats();
+    }
+}
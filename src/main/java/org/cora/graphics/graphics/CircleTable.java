@@ -0,0 +1,68 @@
+package org.cora.graphics.graphics;
+
+/**
+ * Unit circle points cached by number of sides
+ * The least recently used table is replaced once the cache is full
+ */
+public class CircleTable
+{
+    public final static int DEFAULT_CAPACITY = 16;
+
+    private int     keys[];
+    private float   tables[][];
+    private long    stamps[];
+    private long    time;
+
+    public CircleTable()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of tables kept
+     */
+    public CircleTable(int capacity)
+    {
+        keys = new int[capacity];
+        tables = new float[capacity][];
+        stamps = new long[capacity];
+        time = 0;
+    }
+
+    /**
+     * Get points of unit circle, point i is at angle i * 2PI / n
+     * @param n number of sides of circle
+     * @return cos and sin of the n + 1 points, the last one is equal to the first one
+     */
+    public float[] get(int n)
+    {
+        time++;
+
+        int lru = 0;
+        for (int i = 0; i < keys.length; i++)
+        {
+            if (tables[i] != null && keys[i] == n)
+            {
+                stamps[i] = time;
+                return tables[i];
+            }
+            if (stamps[i] < stamps[lru])
+                lru = i;
+        }
+
+        float[] table = new float[(n + 1) * 2];
+        double radiusPart = Math.PI * 2 / n;
+        for (int i = 0; i < n; i++)
+        {
+            table[i * 2] = (float) Math.cos(radiusPart * i);
+            table[i * 2 + 1] = (float) Math.sin(radiusPart * i);
+        }
+        table[n * 2] = table[0];
+        table[n * 2 + 1] = table[1];
+
+        keys[lru] = n;
+        tables[lru] = table;
+        stamps[lru] = time;
+        return table;
+    }
+}
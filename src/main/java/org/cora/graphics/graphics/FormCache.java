@@ -0,0 +1,217 @@
+package org.cora.graphics.graphics;
+
+import org.cora.maths.Form;
+import org.cora.maths.Vector2D;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Triangles and outline of forms kept between frames
+ * Forms are triangulated with ear clipping, so concave forms are supported.
+ * Geometry is computed again only when points of the form have changed.
+ */
+public class FormCache
+{
+    public static class Geometry
+    {
+        /**
+         * x and y of each point of the form
+         */
+        public float[] outline;
+        public int outlineCount;
+
+        /**
+         * x and y of each point, three points per triangle
+         */
+        public float[] triangles;
+        public int trianglesCount;
+
+        private Geometry(int size)
+        {
+            outline = new float[size * 2];
+            triangles = new float[Math.max(size - 2, 1) * 6];
+            outlineCount = 0;
+            trianglesCount = 0;
+        }
+    }
+
+    private Map<Form, Geometry> cache;
+    private int[] indices;
+
+    private int hits;
+    private int misses;
+
+    public FormCache()
+    {
+        cache = new WeakHashMap<Form, Geometry>();
+        indices = new int[16];
+    }
+
+    /**
+     * Get geometry of form, compute it if the form has changed since last call
+     * @param form source
+     * @return cached geometry
+     */
+    public Geometry get(Form form)
+    {
+        int size = form.size();
+        Geometry geometry = cache.get(form);
+
+        if (geometry != null && geometry.outlineCount == size && isSame(geometry, form))
+        {
+            hits++;
+            return geometry;
+        }
+
+        misses++;
+        if (geometry == null || geometry.outline.length < size * 2)
+        {
+            geometry = new Geometry(size);
+            cache.put(form, geometry);
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            Vector2D a = form.get(i);
+            geometry.outline[i * 2] = a.x;
+            geometry.outline[i * 2 + 1] = a.y;
+        }
+        geometry.outlineCount = size;
+        triangulate(geometry);
+
+        return geometry;
+    }
+
+    /**
+     * Remove cached geometry of form
+     * @param form source
+     */
+    public void remove(Form form)
+    {
+        cache.remove(form);
+    }
+
+    public void clear()
+    {
+        cache.clear();
+    }
+
+    public int getHits()
+    {
+        return hits;
+    }
+
+    public int getMisses()
+    {
+        return misses;
+    }
+
+    private boolean isSame(Geometry geometry, Form form)
+    {
+        float[] outline = geometry.outline;
+        for (int i = 0; i < geometry.outlineCount; i++)
+        {
+            Vector2D a = form.get(i);
+            if (a.x != outline[i * 2] || a.y != outline[i * 2 + 1])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Ear clipping of the outline
+     * @param geometry geometry with outline set
+     */
+    private void triangulate(Geometry geometry)
+    {
+        float[] p = geometry.outline;
+        int n = geometry.outlineCount;
+        geometry.trianglesCount = 0;
+        if (n < 3)
+            return;
+
+        if (indices.length < n)
+            indices = new int[n];
+
+        // Walk polygon counter clockwise
+        boolean reverse = area(p, n) < 0;
+        for (int i = 0; i < n; i++)
+            indices[i] = (reverse) ? n - 1 - i : i;
+
+        int remaining = n;
+        int i = 0;
+        int tries = 0;
+        while (remaining > 3)
+        {
+            int prev = indices[(i + remaining - 1) % remaining];
+            int cur = indices[i];
+            int next = indices[(i + 1) % remaining];
+
+            if (isEar(p, prev, cur, next, remaining) || tries > remaining)
+            {
+                // No ear found on self intersecting forms, clip anyway
+                addTriangle(geometry, prev, cur, next);
+                System.arraycopy(indices, i + 1, indices, i, remaining - i - 1);
+                remaining--;
+                tries = 0;
+                if (i == remaining)
+                    i = 0;
+            }
+            else
+            {
+                i = (i + 1) % remaining;
+                tries++;
+            }
+        }
+        addTriangle(geometry, indices[0], indices[1], indices[2]);
+    }
+
+    private boolean isEar(float[] p, int prev, int cur, int next, int remaining)
+    {
+        if (cross(p, prev, cur, next) <= 0)
+            return false;
+
+        for (int k = 0; k < remaining; k++)
+        {
+            int j = indices[k];
+            if (j == prev || j == cur || j == next)
+                continue;
+
+            if (cross(p, prev, cur, j) >= 0 && cross(p, cur, next, j) >= 0 && cross(p, next, prev, j) >= 0)
+                return false;
+        }
+        return true;
+    }
+
+    private void addTriangle(Geometry geometry, int a, int b, int c)
+    {
+        float[] p = geometry.outline;
+        float[] t = geometry.triangles;
+        int offset = geometry.trianglesCount * 2;
+
+        t[offset]     = p[a * 2];
+        t[offset + 1] = p[a * 2 + 1];
+        t[offset + 2] = p[b * 2];
+        t[offset + 3] = p[b * 2 + 1];
+        t[offset + 4] = p[c * 2];
+        t[offset + 5] = p[c * 2 + 1];
+        geometry.trianglesCount += 3;
+    }
+
+    private static float cross(float[] p, int a, int b, int c)
+    {
+        return (p[b * 2] - p[a * 2]) * (p[c * 2 + 1] - p[a * 2 + 1])
+                - (p[b * 2 + 1] - p[a * 2 + 1]) * (p[c * 2] - p[a * 2]);
+    }
+
+    private static float area(float[] p, int n)
+    {
+        float sum = 0;
+        for (int i = 0, j = n - 1; i < n; j = i++)
+        {
+            sum += p[j * 2] * p[i * 2 + 1] - p[i * 2] * p[j * 2 + 1];
+        }
+        return sum * 0.5f;
+    }
+}
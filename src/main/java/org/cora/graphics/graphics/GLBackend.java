@@ -0,0 +1,513 @@
+package org.cora.graphics.graphics;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_BASE_LEVEL;
+import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
+
+/**
+ * Render with OpenGL 1.1, needs a current GL context
+ * Bound texture, color, line width, blend function and alpha test are cached
+ * so unchanged states are not sent again to the driver
+ * Distance field surfaces are loaded as alpha textures and rendered with an
+ * alpha test at half the range, which keeps sharp glyph edges at any scale.
+ */
+public class GLBackend implements RenderBackend
+{
+    private final static int STRIDE = SpriteBatch.VERTEX_SIZE * 4;
+
+    public final static int STATE_TEXTURE    = 0;
+    public final static int STATE_COLOR      = 1;
+    public final static int STATE_LINE_WIDTH = 2;
+    public final static int STATE_BLEND      = 3;
+    public final static int STATE_ALPHA_TEST = 4;
+    public final static int STATE_COUNT      = 5;
+
+    private int   boundTexture;
+    private float r, g, b, a;
+    private float lineWidth;
+    private int   blendSrc;
+    private int   blendDst;
+    private int   alphaTest;
+    private float alphaRef;
+
+    private ByteBuffer  vertexBuffer;
+    private FloatBuffer vertexFloats;
+    private float[]     rec;
+
+    private int[] issued;
+    private int[] skipped;
+    private int[] frameIssued;
+    private int[] frameSkipped;
+
+    public GLBackend()
+    {
+        issued = new int[STATE_COUNT];
+        skipped = new int[STATE_COUNT];
+        frameIssued = new int[STATE_COUNT];
+        frameSkipped = new int[STATE_COUNT];
+        rec = new float[8];
+        allocateVertices(256);
+        invalidateState();
+    }
+
+    /**
+     * Forget cached states, to be called after GL state is changed outside of the backend
+     */
+    public void invalidateState()
+    {
+        boundTexture = -1;
+        r = Float.NaN;
+        lineWidth = Float.NaN;
+        blendSrc = -1;
+        blendDst = -1;
+        alphaTest = -1;
+    }
+
+    /**
+     * @param state STATE_TEXTURE, STATE_COLOR, STATE_LINE_WIDTH, STATE_BLEND or STATE_ALPHA_TEST
+     * @return number of GL calls issued for this state during the last frame
+     */
+    public int getIssuedCalls(int state)
+    {
+        return frameIssued[state];
+    }
+
+    /**
+     * @param state STATE_TEXTURE, STATE_COLOR, STATE_LINE_WIDTH, STATE_BLEND or STATE_ALPHA_TEST
+     * @return number of GL calls skipped for this state during the last frame
+     */
+    public int getSkippedCalls(int state)
+    {
+        return frameSkipped[state];
+    }
+
+    /**
+     * @return issued and skipped calls of the last frame
+     */
+    public String getStats()
+    {
+        return "texture " + frameIssued[STATE_TEXTURE] + "/" + frameSkipped[STATE_TEXTURE]
+                + ", color " + frameIssued[STATE_COLOR] + "/" + frameSkipped[STATE_COLOR]
+                + ", line width " + frameIssued[STATE_LINE_WIDTH] + "/" + frameSkipped[STATE_LINE_WIDTH]
+                + ", blend " + frameIssued[STATE_BLEND] + "/" + frameSkipped[STATE_BLEND]
+                + ", alpha test " + frameIssued[STATE_ALPHA_TEST] + "/" + frameSkipped[STATE_ALPHA_TEST]
+                + " (issued/skipped)";
+    }
+
+    @Override
+    public void endFrame()
+    {
+        System.arraycopy(issued, 0, frameIssued, 0, STATE_COUNT);
+        System.arraycopy(skipped, 0, frameSkipped, 0, STATE_COUNT);
+        for (int i = 0; i < STATE_COUNT; i++)
+        {
+            issued[i] = 0;
+            skipped[i] = 0;
+        }
+    }
+
+    private void bindTexture(int texture)
+    {
+        if (texture == boundTexture)
+        {
+            skipped[STATE_TEXTURE]++;
+            return;
+        }
+
+        glBindTexture(GL_TEXTURE_2D, texture);
+        boundTexture = texture;
+        issued[STATE_TEXTURE]++;
+    }
+
+    /**
+     * @param sfactor source factor
+     * @param dfactor destination factor
+     */
+    public void setBlendFunc(int sfactor, int dfactor)
+    {
+        if (sfactor == blendSrc && dfactor == blendDst)
+        {
+            skipped[STATE_BLEND]++;
+            return;
+        }
+
+        glBlendFunc(sfactor, dfactor);
+        blendSrc = sfactor;
+        blendDst = dfactor;
+        issued[STATE_BLEND]++;
+    }
+
+    /**
+     * Keep fragments of distance fields inside glyphs
+     * Texture alpha is multiplied by the color alpha, so the edge of glyphs at
+     * 0.5 in the texture is tested at half the color alpha
+     *
+     * @param isDistanceField true if the rendered texture is a distance field
+     * @param colorAlpha      alpha of the color of rendered quads
+     */
+    private void setAlphaTest(boolean isDistanceField, float colorAlpha)
+    {
+        int enabled = isDistanceField ? 1 : 0;
+        float ref = 0.5f * colorAlpha;
+        if (enabled == alphaTest && (enabled == 0 || ref == alphaRef))
+        {
+            skipped[STATE_ALPHA_TEST]++;
+            return;
+        }
+
+        if (enabled == 1)
+        {
+            glAlphaFunc(GL_GREATER, ref);
+            if (alphaTest != 1)
+                glEnable(GL_ALPHA_TEST);
+            alphaRef = ref;
+        }
+        else
+        {
+            glDisable(GL_ALPHA_TEST);
+        }
+        alphaTest = enabled;
+        issued[STATE_ALPHA_TEST]++;
+    }
+
+    private void disableAlphaTest()
+    {
+        setAlphaTest(false, 1.0f);
+    }
+
+    /**
+     * @return GL format of surface pixels, -1 if not supported
+     */
+    private static int getFormat(Surface surface)
+    {
+        switch (surface.BytesPerPixel)
+        {
+            case 4:
+                return GL_RGBA;
+            case 3:
+                return GL_RGB;
+            case 1:
+                return (surface.distanceSpread > 0) ? GL_ALPHA : GL_LUMINANCE;
+            default:
+                System.out.println("not supported bytes per pixel "
+                        + surface.BytesPerPixel);
+                return -1;
+        }
+    }
+
+    @Override
+    public void init(int width, int height)
+    {
+        glClearColor(0.0f, 0.0f, 0.0f, 0.0f); // Set the cleared screen colour
+        // to black
+        glViewport(0, 0, width, height); // This sets up the viewport so that
+        // the coordinates (0, 0) are at the
+        // top left of the window
+
+        glMatrixMode(GL_PROJECTION);
+        glLoadIdentity();
+        glOrtho(0, width, height, 0, -10, 10);
+
+        // Back to the modelview so we can draw stuff
+        glMatrixMode(GL_MODELVIEW);
+        glLoadIdentity();
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // Clear the screen
+        // and depth buffer
+        glEnable(GL_TEXTURE_2D);
+
+        invalidateState();
+        bindTexture(0);
+
+        glEnable(GL_BLEND);
+        setBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+    }
+
+    @Override
+    public void clear()
+    {
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+    }
+
+    @Override
+    public void setViewport(int x, int y, int width, int height)
+    {
+        glViewport(x, y, width, height);
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a)
+    {
+        if (r == this.r && g == this.g && b == this.b && a == this.a)
+        {
+            skipped[STATE_COLOR]++;
+            return;
+        }
+
+        glColor4f(r, g, b, a);
+        this.r = r;
+        this.g = g;
+        this.b = b;
+        this.a = a;
+        issued[STATE_COLOR]++;
+    }
+
+    @Override
+    public void setLineSize(float s)
+    {
+        if (s == lineWidth)
+        {
+            skipped[STATE_LINE_WIDTH]++;
+            return;
+        }
+
+        glLineWidth(s);
+        lineWidth = s;
+        issued[STATE_LINE_WIDTH]++;
+    }
+
+    @Override
+    public void pushMatrix()
+    {
+        glPushMatrix();
+    }
+
+    @Override
+    public void popMatrix()
+    {
+        glPopMatrix();
+    }
+
+    @Override
+    public void translate(float x, float y)
+    {
+        glTranslatef(x, y, 0);
+    }
+
+    @Override
+    public void scale(float x, float y)
+    {
+        glScalef(x, y, 1.0f);
+    }
+
+    @Override
+    public void rotate(float degrees, float x, float y, float z)
+    {
+        glRotatef(degrees, x, y, z);
+    }
+
+    @Override
+    public void loadTexture(Surface surface)
+    {
+        int texture = glGenTextures();
+
+        bindTexture(texture);
+
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_BASE_LEVEL, 0); // Always
+        // set the base and max mipmap levels of a texture.
+        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, 0);
+
+        // Map the surface to the texture in video memory
+        int format = getFormat(surface);
+        if (format != -1)
+        {
+            // Rows of one byte per pixel are not aligned on 4 bytes
+            if (surface.BytesPerPixel != 4)
+                glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+            glTexImage2D(GL_TEXTURE_2D, 0, format, surface.w, surface.h, 0,
+                    format, GL_UNSIGNED_BYTE, surface.pixels);
+            if (surface.BytesPerPixel != 4)
+                glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+        }
+
+        surface.texture = texture;
+    }
+
+    @Override
+    public void updateTexture(Surface surface, int x, int y, int width, int height)
+    {
+        int format = getFormat(surface);
+        if (format == -1)
+            return;
+
+        bindTexture(surface.texture);
+
+        // Rows of the part are read from the whole surface
+        glPixelStorei(GL_UNPACK_ROW_LENGTH, surface.w);
+        glPixelStorei(GL_UNPACK_SKIP_PIXELS, x);
+        glPixelStorei(GL_UNPACK_SKIP_ROWS, y);
+        if (surface.BytesPerPixel != 4)
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 1);
+        glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, width, height, format,
+                GL_UNSIGNED_BYTE, surface.pixels);
+        glPixelStorei(GL_UNPACK_ROW_LENGTH, 0);
+        glPixelStorei(GL_UNPACK_SKIP_PIXELS, 0);
+        glPixelStorei(GL_UNPACK_SKIP_ROWS, 0);
+        if (surface.BytesPerPixel != 4)
+            glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+    }
+
+    @Override
+    public void freeTexture(int texture)
+    {
+        glDeleteTextures(texture);
+
+        // Deleting the bound texture binds the default one
+        if (texture == boundTexture)
+            boundTexture = 0;
+    }
+
+    @Override
+    public void render(Surface surface, int x, int y, int width, int height)
+    {
+        bindTexture(surface.texture);
+        // Color is unknown after drawing a color array
+        setAlphaTest(surface.distanceSpread > 0, Float.isNaN(r) ? 1.0f : a);
+
+        // Render texture quad
+        float x1 = ((float) x) / surface.w;
+        float x2 = ((float) x + width) / surface.w;
+        float y1 = ((float) y) / surface.h;
+        float y2 = ((float) y + height) / surface.h;
+
+        glBegin(GL_QUADS);
+        glTexCoord2f(x1, y1);
+        glVertex2f((float) x, (float) y); // Bottom left
+        glTexCoord2f(x2, y1);
+        glVertex2f((float) (x + width), (float) y); // Bottom right
+        glTexCoord2f(x2, y2);
+        glVertex2f((float) (x + width), (float) (y + height)); // Top
+        // right
+        glTexCoord2f(x1, y2);
+        glVertex2f((float) x, (float) (y + height)); // Top left
+        glEnd();
+    }
+
+    @Override
+    public void renderQuads(Surface surface, ByteBuffer vertices, int count)
+    {
+        bindTexture(surface.texture);
+        if (surface.distanceSpread <= 0)
+            disableAlphaTest();
+
+        glEnableClientState(GL_VERTEX_ARRAY);
+        glEnableClientState(GL_TEXTURE_COORD_ARRAY);
+        glEnableClientState(GL_COLOR_ARRAY);
+
+        vertices.position(0);
+        glVertexPointer(2, GL_FLOAT, STRIDE, vertices);
+        vertices.position(2 * 4);
+        glTexCoordPointer(2, GL_FLOAT, STRIDE, vertices);
+        vertices.position(4 * 4);
+        glColorPointer(4, GL_FLOAT, STRIDE, vertices);
+        vertices.position(0);
+
+        if (surface.distanceSpread > 0)
+        {
+            // Quads are drawn by runs of the same alpha, each with its alpha test
+            int first = 0;
+            float alpha = getQuadAlpha(vertices, 0);
+            for (int i = 1; i <= count; i++)
+            {
+                float next = (i < count) ? getQuadAlpha(vertices, i) : Float.NaN;
+                if (next != alpha)
+                {
+                    setAlphaTest(true, alpha);
+                    glDrawArrays(GL_QUADS, first * 4, (i - first) * 4);
+                    first = i;
+                    alpha = next;
+                }
+            }
+        }
+        else
+        {
+            glDrawArrays(GL_QUADS, 0, count * 4);
+        }
+
+        glDisableClientState(GL_COLOR_ARRAY);
+        glDisableClientState(GL_TEXTURE_COORD_ARRAY);
+        glDisableClientState(GL_VERTEX_ARRAY);
+
+        // Current color is undefined after drawing with a color array
+        r = Float.NaN;
+    }
+
+    /**
+     * @return alpha of the color of quad i, all vertices of a quad have the same color
+     */
+    private static float getQuadAlpha(ByteBuffer vertices, int i)
+    {
+        return vertices.getFloat(i * STRIDE * 4 + (SpriteBatch.VERTEX_SIZE - 1) * 4);
+    }
+
+    @Override
+    public void fillRec(float x, float y, float w, float h)
+    {
+        addPoints(GL_POLYGON, setPointsRec(x, y, w, h), 4);
+    }
+
+    @Override
+    public void drawRec(float x, float y, float w, float h)
+    {
+        addPoints(GL_LINE_LOOP, setPointsRec(x, y, w, h), 4);
+    }
+
+    private float[] setPointsRec(float x, float y, float w, float h)
+    {
+        rec[0] = x;     rec[1] = y;
+        rec[2] = x + w; rec[3] = y;
+        rec[4] = x + w; rec[5] = y + h;
+        rec[6] = x;     rec[7] = y + h;
+        return rec;
+    }
+
+    @Override
+    public void fillPolygon(float[] points, int count)
+    {
+        addPoints(GL_POLYGON, points, count);
+    }
+
+    @Override
+    public void fillTriangles(float[] points, int count)
+    {
+        addPoints(GL_TRIANGLES, points, count);
+    }
+
+    @Override
+    public void drawPolygon(float[] points, int count, boolean closed)
+    {
+        addPoints((closed) ? GL_LINE_LOOP : GL_LINE_STRIP, points, count);
+    }
+
+    private void allocateVertices(int count)
+    {
+        vertexBuffer = BufferUtils.createByteBuffer(count * 2 * 4);
+        vertexFloats = vertexBuffer.asFloatBuffer();
+    }
+
+    /**
+     * Render points with a vertex array
+     */
+    private void addPoints(int type, float[] points, int count)
+    {
+        if (count * 2 > vertexFloats.capacity())
+            allocateVertices(Math.max(count, vertexFloats.capacity()));
+
+        vertexFloats.clear();
+        vertexFloats.put(points, 0, count * 2);
+
+        bindTexture(0);
+        disableAlphaTest();
+        glEnableClientState(GL_VERTEX_ARRAY);
+        vertexBuffer.position(0);
+        glVertexPointer(2, GL_FLOAT, 0, vertexBuffer);
+        glDrawArrays(type, 0, count);
+        glDisableClientState(GL_VERTEX_ARRAY);
+    }
+}
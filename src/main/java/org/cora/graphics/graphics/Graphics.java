@@ -4,6 +4,7 @@ import org.cora.graphics.base.Image;
 import org.cora.graphics.base.Rect;
 import org.cora.graphics.base.SpriteData;
 import org.cora.graphics.manager.FileManager;
+import org.cora.graphics.manager.ResidencyManager;
 import org.cora.graphics.manager.TextureManager;
 import org.cora.maths.Circle;
 import org.cora.maths.Form;
@@ -15,9 +16,8 @@ import org.lwjgl.glfw.GLFWVidMode;
 import org.lwjgl.opengl.GL;
 
 import static org.lwjgl.glfw.GLFW.*;
-import static org.lwjgl.opengl.GL11.*;
-import static org.lwjgl.opengl.GL12.GL_TEXTURE_BASE_LEVEL;
-import static org.lwjgl.opengl.GL12.GL_TEXTURE_MAX_LEVEL;
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
 import static org.lwjgl.system.MemoryUtil.NULL;
 
 public class Graphics
@@ -25,10 +25,37 @@ public class Graphics
     private long              screen;
     private int width;
     private int height;
+    private SpriteBatch batch;
+    private RenderBackend backend;
+    private float[] points;
+    private CircleTable circleTable;
+    private FormCache formCache;
+    private ResidencyManager residency;
 
     public Graphics()
     {
         screen = NULL;
+        batch = null;
+        backend = new GLBackend();
+        points = new float[64];
+        circleTable = new CircleTable();
+        formCache = new FormCache();
+        residency = null;
+    }
+
+    /**
+     * Create Tool renderer without window
+     * @param backend drawing surface
+     * @param width width of the output
+     * @param height height of the output
+     */
+    public Graphics(RenderBackend backend, int width, int height)
+    {
+        this();
+        this.backend = backend;
+        this.width = width;
+        this.height = height;
+        backend.init(width, height);
     }
 
     /**
@@ -41,6 +68,7 @@ public class Graphics
      */
     public Graphics(String windowName, int width, int height, boolean initGL, boolean initManager, Class main)
     {
+        this();
         init(windowName, width, height);
 
         if (initGL)
@@ -58,6 +86,15 @@ public class Graphics
         return screen;
     }
 
+    /**
+     *
+     * @return drawing surface
+     */
+    public RenderBackend getBackend()
+    {
+        return backend;
+    }
+
     /**
      *
      * @return state of window
@@ -143,25 +180,7 @@ public class Graphics
      */
     public void initGL()
     {
-        glClearColor(0.0f, 0.0f, 0.0f, 0.0f); // Set the cleared screen colour
-        // to black
-        glViewport(0, 0, width, height); // This sets up the viewport so that
-        // the coordinates (0, 0) are at the
-        // top left of the window
-
-        glMatrixMode(GL_PROJECTION);
-        glLoadIdentity();
-        glOrtho(0, width, height, 0, -10, 10);
-
-        // Back to the modelview so we can draw stuff
-        glMatrixMode(GL_MODELVIEW);
-        glLoadIdentity();
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT); // Clear the screen
-        // and depth buffer
-        glEnable(GL_TEXTURE_2D);
-
-        glEnable(GL_BLEND);
-        glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
+        backend.init(width, height);
     }
 
     /**
@@ -169,7 +188,8 @@ public class Graphics
      */
     public void clear()
     {
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        flushBatch();
+        backend.clear();
     }
 
     /**
@@ -177,8 +197,13 @@ public class Graphics
      */
     public void swapGL()
     {
-        glfwSwapBuffers(screen);
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        flushBatch();
+        if (screen != NULL)
+            glfwSwapBuffers(screen);
+        backend.endFrame();
+        if (residency != null)
+            residency.endFrame();
+        backend.clear();
     }
 
     /**
@@ -187,37 +212,93 @@ public class Graphics
      */
     public void render(Image image)
     {
-        glPushMatrix();
+        if (batch != null && batch.isDrawing())
+        {
+            batch.draw(image);
+            return;
+        }
+
+        backend.pushMatrix();
 
         Rectangle rec = image.getRectangle();
         SpriteData sd = image.getSpriteData();
 
-        glTranslatef(rec.getCenterX() + ((int) rec.getWidth())
+        backend.translate(rec.getCenterX() + ((int) rec.getWidth())
                 * ((sd.flipH) ? 1 : 0),
                 rec.getCenterY() + ((int) rec.getHeight())
-                        * ((sd.flipV) ? 1 : 0), 0.0f);
+                        * ((sd.flipV) ? 1 : 0));
 
-        glScalef(rec.getWidth() / sd.rect.w * ((sd.flipH) ? -1.0f : 1.0f),
-                rec.getHeight() / sd.rect.h * ((sd.flipV) ? -1.0f : 1.0f), 0.0f);
+        backend.scale(rec.getWidth() / sd.rect.w * ((sd.flipH) ? -1.0f : 1.0f),
+                rec.getHeight() / sd.rect.h * ((sd.flipV) ? -1.0f : 1.0f));
 
         if (Math.abs(rec.getAngle()) > 0.001f
                 && Math.abs(rec.getAngle() - Math.PI * 2) > 0.001f)
-            glRotatef((float) ((rec.getAngle() * 180) / Math.PI), 0, 0, 1.0f);
+            backend.rotate((float) ((rec.getAngle() * 180) / Math.PI), 0, 0, 1.0f);
 
-        glTranslatef(-sd.rect.x - sd.rect.w
+        backend.translate(-sd.rect.x - sd.rect.w
                 * (0.5f - ((sd.flipH) ? 1.0f : 0.0f)), -sd.rect.y - sd.rect.h
-                * (0.5f - ((sd.flipV) ? 1.0f : 0.0f)), 0.0f);
+                * (0.5f - ((sd.flipV) ? 1.0f : 0.0f)));
 
         setColor(image.getColor());
 
         render(sd.surface, sd.rect);
 
-        glPopMatrix();
+        backend.popMatrix();
+    }
+
+    /**
+     * @return batch used to render images between beginBatch and endBatch
+     */
+    public SpriteBatch getSpriteBatch()
+    {
+        if (batch == null)
+        {
+            batch = new SpriteBatch(backend);
+            batch.setResidencyManager(residency);
+        }
+        return batch;
+    }
+
+    /**
+     * Rendered textures are reported to residency manager
+     * @param residency residency manager, null to disable
+     */
+    public void setResidencyManager(ResidencyManager residency)
+    {
+        this.residency = residency;
+        if (batch != null)
+            batch.setResidencyManager(residency);
+    }
+
+    /**
+     * Images rendered until endBatch are gathered and rendered with one draw call per texture
+     */
+    public void beginBatch()
+    {
+        getSpriteBatch().begin();
+    }
+
+    /**
+     * Render gathered images and go back to immediate rendering
+     */
+    public void endBatch()
+    {
+        getSpriteBatch().end();
+    }
+
+    /**
+     * Render gathered images before changing state or drawing other primitives
+     */
+    public void flushBatch()
+    {
+        if (batch != null && batch.isPending())
+            batch.flush();
     }
 
     public void setOutpout(int x, int y, int width, int height)
     {
-        glViewport(x, y, width, height);
+        flushBatch();
+        backend.setViewport(x, y, width, height);
     }
 
     /**
@@ -225,7 +306,8 @@ public class Graphics
      */
     public void resetOuput()
     {
-        glViewport(0, 0, width, height);
+        flushBatch();
+        backend.setViewport(0, 0, width, height);
     }
 
 
@@ -249,28 +331,10 @@ public class Graphics
      */
     public void render(Surface surface, int x, int y, int width, int height)
     {
-        glBindTexture(GL_TEXTURE_2D, surface.texture);
-
-        // Render texture quad
-        float x1 = ((float) x) / surface.w;
-        float x2 = ((float) x + width) / surface.w;
-        float y1 = ((float) y) / surface.h;
-        float y2 = ((float) y + height) / surface.h;
-
-        glBegin(GL_QUADS);
-        glTexCoord2f(x1, y1);
-        glVertex2f((float) x, (float) y); // Bottom left
-        glTexCoord2f(x2, y1);
-        glVertex2f((float) (x + width), (float) y); // Bottom right
-        glTexCoord2f(x2, y2);
-        glVertex2f((float) (x + width), (float) (y + height)); // Top
-        // right
-        glTexCoord2f(x1, y2);
-        glVertex2f((float) x, (float) (y + height)); // Top left
-        glEnd();
-
-        // On deselectionne la Texture
-        glBindTexture(GL_TEXTURE_2D, 0);
+        flushBatch();
+        if (residency != null)
+            residency.use(surface);
+        backend.render(surface, x, y, width, height);
     }
 
 
@@ -280,40 +344,20 @@ public class Graphics
      */
     public void loadTextureGL(Surface surface)
     {
-        int texture = glGenTextures();
-
-        glBindTexture(GL_TEXTURE_2D, texture);
-
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_LINEAR);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_LINEAR);
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_BASE_LEVEL, 0); // Always
-        // set the base and max mipmap levels of a texture.
-        glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, 0);
-
-        // Map the surface to the texture in video memory
-        switch (surface.BytesPerPixel)
-        {
-            case 4:
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, surface.w, surface.h,
-                        0, GL_RGBA, GL_UNSIGNED_BYTE, surface.pixels); // GL_PNG
-                break;
-            case 3:
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_RGB, surface.w, surface.h, 0,
-                        GL_RGB, GL_UNSIGNED_BYTE, surface.pixels); // GL_BITMAP
-                break;
-            case 1:
-                glTexImage2D(GL_TEXTURE_2D, 0, GL_LUMINANCE, surface.w,
-                        surface.h, 0, GL_LUMINANCE, GL_UNSIGNED_BYTE,
-                        surface.pixels); // GL_BITMAP
-                break;
-            default:
-                System.out.println("not supported bytes per pixel "
-                        + surface.BytesPerPixel);
-                break;
-        }
+        backend.loadTexture(surface);
+    }
 
-        glBindTexture(GL_TEXTURE_2D, 0);
-        surface.texture = texture;
+    /**
+     * Copy part of the surface pixels in its texture in video memory
+     * @param surface loaded texture
+     * @param x coordinate of the part
+     * @param y coordinate of the part
+     * @param width length of the part
+     * @param height length of the part
+     */
+    public void updateTextureGL(Surface surface, int x, int y, int width, int height)
+    {
+        backend.updateTexture(surface, x, y, width, height);
     }
 
     /**
@@ -322,7 +366,7 @@ public class Graphics
      */
     public void freeTexture(int texture)
     {
-        glDeleteTextures(texture);
+        backend.freeTexture(texture);
     }
 
     /**
@@ -342,9 +386,8 @@ public class Graphics
      */
     public void fillRec(int x, int y, int w, int h)
     {
-        glBegin(GL_POLYGON);
-        addPointsRec(x, y, w, h);
-        glEnd();
+        flushBatch();
+        backend.fillRec(x, y, w, h);
     }
 
     /**
@@ -356,17 +399,8 @@ public class Graphics
      */
     public void drawRec(float x, float y, float w, float h)
     {
-        glBegin(GL_LINE_LOOP);
-        addPointsRec(x, y, w, h);
-        glEnd();
-    }
-
-    private void addPointsRec(float x, float y, float w, float h)
-    {
-        glVertex2f(x    , y     );
-        glVertex2f(x + w, y     );
-        glVertex2f(x + w, y + h );
-        glVertex2f(x    , y + h );
+        flushBatch();
+        backend.drawRec(x, y, w, h);
     }
 
     /**
@@ -378,7 +412,7 @@ public class Graphics
      */
     public void fillCircleFixed(Circle circle, int n, float start, float end)
     {
-        addPointsCircleFixed(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, GL_POLYGON);
+        addPointsCircleFixed(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, true);
     }
 
     /**
@@ -391,7 +425,7 @@ public class Graphics
      */
     public void fillCircleFixed(Vector2D center, float radius, int n, float start, float end)
     {
-        addPointsCircleFixed(center.x, center.y, radius, n, start, end, GL_POLYGON);
+        addPointsCircleFixed(center.x, center.y, radius, n, start, end, true);
     }
 
     /**
@@ -405,7 +439,7 @@ public class Graphics
      */
     public void fillCircleFixed(float x0, float y0, float radius, int n, float start, float end)
     {
-        addPointsCircleFixed(x0, y0, radius, n, start, end, GL_POLYGON);
+        addPointsCircleFixed(x0, y0, radius, n, start, end, true);
     }
 
     /**
@@ -417,7 +451,7 @@ public class Graphics
      */
     public void drawCircleFixed(Circle circle, int n, float start, float end)
     {
-        addPointsCircleFixed(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, GL_LINE_LOOP);
+        addPointsCircleFixed(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, false);
     }
 
     /**
@@ -430,7 +464,7 @@ public class Graphics
      */
     public void drawCircleFixed(Vector2D center, float radius, int n, float start, float end)
     {
-        addPointsCircleFixed(center.x, center.y, radius, n, start, end, GL_LINE_LOOP);
+        addPointsCircleFixed(center.x, center.y, radius, n, start, end, false);
     }
 
     /**
@@ -444,7 +478,7 @@ public class Graphics
      */
     public void drawCircleFixed(float x0, float y0, float radius, int n, float start, float end)
     {
-        addPointsCircleFixed(x0, y0, radius, n, start, end, GL_LINE_LOOP);
+        addPointsCircleFixed(x0, y0, radius, n, start, end, false);
     }
 
     /**
@@ -456,7 +490,7 @@ public class Graphics
      */
     public void fillCircle(Circle circle, int n, float start, float end)
     {
-        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, GL_POLYGON);
+        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, true);
     }
 
     /**
@@ -469,7 +503,7 @@ public class Graphics
      */
     public void fillCircle(Vector2D center, float radius, int n, float start, float end)
     {
-        addPointsCircle(center.x, center.y, radius, n, start, end, GL_POLYGON);
+        addPointsCircle(center.x, center.y, radius, n, start, end, true);
     }
 
     /**
@@ -483,7 +517,7 @@ public class Graphics
      */
     public void fillCircle(float x0, float y0, float radius, int n, float start, float end)
     {
-        addPointsCircle(x0, y0, radius, n, start, end, GL_POLYGON);
+        addPointsCircle(x0, y0, radius, n, start, end, true);
     }
 
     /**
@@ -495,7 +529,7 @@ public class Graphics
      */
     public void drawCircle(Circle circle, int n, float start, float end)
     {
-        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, GL_LINE_LOOP);
+        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, start, end, false);
     }
 
     /**
@@ -508,7 +542,7 @@ public class Graphics
      */
     public void drawCircle(Vector2D center, float radius, int n, float start, float end)
     {
-        addPointsCircle(center.x, center.y, radius, n, start, end, GL_LINE_LOOP);
+        addPointsCircle(center.x, center.y, radius, n, start, end, false);
     }
 
     /**
@@ -522,12 +556,13 @@ public class Graphics
      */
     public void drawCircle(float x0, float y0, float radius, int n, float start, float end)
     {
-        addPointsCircle(x0, y0, radius, n, start, end, GL_LINE_LOOP);
+        addPointsCircle(x0, y0, radius, n, start, end, false);
     }
 
-    private void addPointsCircle(float x0, float y0, float radius, int n, float start, float end, int type)
+    private void addPointsCircle(float x0, float y0, float radius, int n, float start, float end, boolean fill)
     {
-        if (n < 0)
+        flushBatch();
+        if (n <= 0)
             return;
 
         float radiusPart = (float) (Math.PI * 2 / n);
@@ -538,27 +573,33 @@ public class Graphics
             start = start - end;
         }
 
+        // Table points rotated by start
+        float[] table = circleTable.get(n);
+        float cosStart = (float) Math.cos(start);
+        float sinStart = (float) Math.sin(start);
+        int steps = (int) Math.ceil((end - start) / radiusPart);
+
         float x, y;
-        //start = (int) (start/radiusPart) * radiusPart;
-        glBegin(type);
-        glVertex2f(x0, y0);
-        for (float rad = start; rad < end; rad += radiusPart)
+        int count = addPoint(0, x0, y0);
+        for (int k = 0; k < steps; k++)
         {
-            x = (float) Math.cos(rad);
-            y = (float) Math.sin(rad);
+            int i = (k % n) * 2;
+            x = cosStart * table[i] - sinStart * table[i + 1];
+            y = sinStart * table[i] + cosStart * table[i + 1];
 
-            glVertex2f(x0 + x*radius, y0 + y*radius);
+            count = addPoint(count, x0 + x*radius, y0 + y*radius);
         }
         x = (float) Math.cos(end);
         y = (float) Math.sin(end);
-        glVertex2f(x0 + x*radius, y0 + y*radius);
-        glEnd();
+        count = addPoint(count, x0 + x*radius, y0 + y*radius);
+        renderPoints(count, fill);
     }
 
 
-    private void addPointsCircleFixed(float x0, float y0, float radius, int n, float start, float end, int type)
+    private void addPointsCircleFixed(float x0, float y0, float radius, int n, float start, float end, boolean fill)
     {
-        if (n < 0)
+        flushBatch();
+        if (n <= 0)
             return;
 
         float radiusPart = (float) (Math.PI * 2 / n);
@@ -569,21 +610,25 @@ public class Graphics
             start = start - end;
         }
 
+        // Start is aligned on the table points
+        int first = (int) (start/radiusPart);
+        start = first * radiusPart;
+        first = ((first % n) + n) % n;
+
+        float[] table = circleTable.get(n);
+        int steps = (int) Math.ceil((end - start) / radiusPart);
+
         float x, y;
-        start = (int) (start/radiusPart) * radiusPart;
-        glBegin(type);
-        glVertex2f(x0, y0);
-        for (float rad = start; rad < end; rad += radiusPart)
+        int count = addPoint(0, x0, y0);
+        for (int k = 0; k < steps; k++)
         {
-            x = (float) Math.cos(rad);
-            y = (float) Math.sin(rad);
-
-            glVertex2f(x0 + x*radius, y0 + y*radius);
+            int i = ((first + k) % n) * 2;
+            count = addPoint(count, x0 + table[i]*radius, y0 + table[i + 1]*radius);
         }
         x = (float) Math.cos(end);
         y = (float) Math.sin(end);
-        glVertex2f(x0 + x*radius, y0 + y*radius);
-        glEnd();
+        count = addPoint(count, x0 + x*radius, y0 + y*radius);
+        renderPoints(count, fill);
     }
 
     /**
@@ -593,7 +638,7 @@ public class Graphics
      */
     public void fillCircle(Circle circle, int n)
     {
-        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, GL_POLYGON);
+        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, true);
     }
 
     /**
@@ -604,7 +649,7 @@ public class Graphics
      */
     public void fillCircle(Vector2D center, float radius, int n)
     {
-        addPointsCircle(center.x, center.y, radius, n, GL_POLYGON);
+        addPointsCircle(center.x, center.y, radius, n, true);
     }
 
     /**
@@ -616,7 +661,7 @@ public class Graphics
      */
     public void fillCircle(float x0, float y0, float radius, int n)
     {
-        addPointsCircle(x0, y0, radius, n, GL_POLYGON);
+        addPointsCircle(x0, y0, radius, n, true);
     }
 
     /**
@@ -626,7 +671,7 @@ public class Graphics
      */
     public void drawCircle(Circle circle, int n)
     {
-        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, GL_LINE_LOOP);
+        addPointsCircle(circle.getCenterX(), circle.getCenterY(), circle.getRadius(), n, false);
     }
 
     /**
@@ -637,7 +682,7 @@ public class Graphics
      */
     public void drawCircle(Vector2D center, float radius, int n)
     {
-        addPointsCircle(center.x, center.y, radius, n, GL_LINE_LOOP);
+        addPointsCircle(center.x, center.y, radius, n, false);
     }
 
     /**
@@ -649,166 +694,194 @@ public class Graphics
      */
     public void drawCircle(float x0, float y0, float radius, int n)
     {
-        addPointsCircle(x0, y0, radius, n, GL_LINE_LOOP);
+        addPointsCircle(x0, y0, radius, n, false);
     }
 
-    private void addPointsCircle(float x0, float y0, float radius, int n, int type)
+    private void addPointsCircle(float x0, float y0, float radius, int n, boolean fill)
     {
-        if (n < 0)
+        flushBatch();
+        if (n <= 0)
             return;
 
-        glBegin(type);
-        float radiusPart = (float) (Math.PI * 2 / n);
-        float end = (float) (2*Math.PI);
-        float x, y;
-        for (float rad = 0; rad < end; rad += radiusPart)
+        float[] table = circleTable.get(n);
+        int count = 0;
+        for (int i = 0; i <= n * 2; i += 2)
         {
-            x = (float) Math.cos(rad);
-            y = (float) Math.sin(rad);
-            glVertex2f(x0 + x*radius, y0 + y*radius);
+            count = addPoint(count, x0 + table[i]*radius, y0 + table[i + 1]*radius);
         }
-        x = (float) Math.cos(end);
-        y = (float) Math.sin(end);
-        glVertex2f(x0 + x*radius, y0 + y*radius);
-        glEnd();
+        renderPoints(count, fill);
+    }
+
+    /**
+     * Store point in points buffer
+     * @param count number of stored points
+     * @param x coordinate
+     * @param y coordinate
+     * @return number of stored points
+     */
+    private int addPoint(int count, float x, float y)
+    {
+        if (count * 2 + 2 > points.length)
+        {
+            float[] tmp = new float[points.length * 2];
+            System.arraycopy(points, 0, tmp, 0, count * 2);
+            points = tmp;
+        }
+        points[count * 2] = x;
+        points[count * 2 + 1] = y;
+        return count + 1;
+    }
+
+    private void renderPoints(int count, boolean fill)
+    {
+        if (fill)
+            backend.fillPolygon(points, count);
+        else
+            backend.drawPolygon(points, count, true);
     }
 
     public void drawLine(float x0, float y0, float x1, float y1)
     {
-        glBegin(GL_LINES);
-        glVertex2f(x0, y0);
-        glVertex2f(x1, y1);
-        glEnd();
+        flushBatch();
+        int count = addPoint(0, x0, y0);
+        count = addPoint(count, x1, y1);
+        backend.drawPolygon(points, count, false);
     }
 
     public void drawLine(Vector2D p1, Vector2D p2)
     {
-        glBegin(GL_LINES);
-        glVertex2f(p1.x, p1.y);
-        glVertex2f(p2.x, p2.y);
-        glEnd();
+        flushBatch();
+        int count = addPoint(0, p1.x, p1.y);
+        count = addPoint(count, p2.x, p2.y);
+        backend.drawPolygon(points, count, false);
     }
 
     public void fillTriangle(Vector2D p1, Vector2D p2, Vector2D p3)
     {
-        glBegin(GL_TRIANGLES);
-        glVertex2f(p1.x, p1.y);
-        glVertex2f(p2.x, p2.y);
-        glVertex2f(p3.x, p3.y);
-        glEnd();
+        flushBatch();
+        int count = addPoint(0, p1.x, p1.y);
+        count = addPoint(count, p2.x, p2.y);
+        count = addPoint(count, p3.x, p3.y);
+        backend.fillTriangles(points, count);
     }
 
     public void fillForm(Form form)
     {
-        if (form.size() < 2)
+        flushBatch();
+        if (form.size() < 3)
             return;
 
-        glBegin(GL_POLYGON);
-        addPointsForm(form);
-        glEnd();
-    }
-
-    private void addPointsForm(Form form)
-    {
-        for (int i = 0; i < form.size(); i++)
-        {
-            Vector2D a = form.get(i);
-            glVertex2f(a.x, a.y);
-        }
+        FormCache.Geometry geometry = formCache.get(form);
+        backend.fillTriangles(geometry.triangles, geometry.trianglesCount);
     }
 
     public void drawForm(Form form)
     {
+        flushBatch();
         if (form.size() < 2)
             return;
 
-        //glBegin(GL_LINE_LOOP);
-        //addPointsForm(form);
-        //glEnd();
+        FormCache.Geometry geometry = formCache.get(form);
+        backend.drawPolygon(geometry.outline, geometry.outlineCount, true);
+    }
 
-        glBegin(GL_LINE_STRIP);
-        for (int i = 0; i < form.size(); i++)
-        {
-            Vector2D a = form.get(i);
-            glVertex2f(a.x, a.y);
-        }
-        Vector2D a = form.get(0);
-        glVertex2f(a.x, a.y);
-        glEnd();
+    /**
+     * @return geometry kept for fillForm and drawForm
+     */
+    public FormCache getFormCache()
+    {
+        return formCache;
     }
 
     public void setColor(float r, float g, float b)
     {
-        glColor3f(r, g, b);
+        backend.setColor(r, g, b, 1.0f);
     }
 
     public void setColor(float r, float g, float b, float a)
     {
-        glColor4f(r, g, b, a);
+        backend.setColor(r, g, b, a);
     }
 
     public void setColor(myColor color)
     {
-        glColor4f(color.r, color.g, color.b, color.a);
+        backend.setColor(color.r, color.g, color.b, color.a);
     }
 
     public void setLineSize(float s)
     {
-        glLineWidth(s);
+        backend.setLineSize(s);
     }
 
     public void translate(Vector2D vec)
     {
-        glTranslatef(vec.x, vec.y, 0);
+        flushBatch();
+        backend.translate(vec.x, vec.y);
     }
 
     public void translateNeg(Vector2D vec)
     {
-        glTranslatef(-vec.x, -vec.y, 0);
+        flushBatch();
+        backend.translate(-vec.x, -vec.y);
     }
 
     public void translate(float x, float y)
     {
-        glTranslatef(x, y, 0);
+        flushBatch();
+        backend.translate(x, y);
     }
 
     public void translateX(float x)
     {
-        glTranslatef(x, 0, 0);
+        flushBatch();
+        backend.translate(x, 0);
     }
 
     public void translateY(float y)
     {
-        glTranslatef(0, y, 0);
+        flushBatch();
+        backend.translate(0, y);
     }
 
     public void scale(float factor)
     {
-        glScalef(factor, factor, 1);
+        flushBatch();
+        backend.scale(factor, factor);
+    }
+
+    public void scale(float x, float y)
+    {
+        flushBatch();
+        backend.scale(x, y);
     }
 
     public void rotate(float rad)
     {
-        glRotatef(rad, 0, 0, 0);
+        flushBatch();
+        backend.rotate(rad, 0, 0, 0);
     }
 
     public void rotate(float rad, float x, float y)
     {
-        glRotatef(rad, x, y, 0);
+        flushBatch();
+        backend.rotate(rad, x, y, 0);
     }
 
     public void rotate(float rad, Vector2D vec)
     {
-        glRotatef(rad, vec.x, vec.y, 0);
+        flushBatch();
+        backend.rotate(rad, vec.x, vec.y, 0);
     }
 
     public void pushMatrix()
     {
-        glPushMatrix();
+        flushBatch();
+        backend.pushMatrix();
     }
 
     public void popMatrix()
     {
-        glPopMatrix();
+        flushBatch();
+        backend.popMatrix();
     }
 }
@@ -0,0 +1,129 @@
+package org.cora.graphics.graphics;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Drawing surface used by Graphics
+ * Coordinates are in pixels with the origin at the top left of the output
+ */
+public interface RenderBackend
+{
+    /**
+     * Set up 2D rendering on the output
+     * @param width width of the output
+     * @param height height of the output
+     */
+    void init(int width, int height);
+
+    /**
+     * Clear output
+     */
+    void clear();
+
+    /**
+     * Called once the frame is displayed
+     */
+    void endFrame();
+
+    /**
+     * Render the output in part of the window
+     * @param x left coordinate from the bottom left corner
+     * @param y bottom coordinate from the bottom left corner
+     * @param width width of the part
+     * @param height height of the part
+     */
+    void setViewport(int x, int y, int width, int height);
+
+    void setColor(float r, float g, float b, float a);
+
+    void setLineSize(float s);
+
+    // Matrix stack
+
+    void pushMatrix();
+
+    void popMatrix();
+
+    void translate(float x, float y);
+
+    void scale(float x, float y);
+
+    /**
+     * @param degrees rotation angle
+     * @param x axis
+     * @param y axis
+     * @param z axis
+     */
+    void rotate(float degrees, float x, float y, float z);
+
+    // Textures
+
+    /**
+     * Load texture in video memory and set surface.texture
+     * @param surface texture
+     */
+    void loadTexture(Surface surface);
+
+    /**
+     * Copy part of surface pixels in its loaded texture
+     * @param surface texture with surface.texture set
+     * @param x coordinate of the part
+     * @param y coordinate of the part
+     * @param width length of the part
+     * @param height length of the part
+     */
+    void updateTexture(Surface surface, int x, int y, int width, int height);
+
+    /**
+     * Free texture from video memory
+     * @param texture textureId
+     */
+    void freeTexture(int texture);
+
+    // Drawing
+
+    /**
+     * Render part of texture with current color
+     * @param surface texture
+     * @param x coordinate selection part
+     * @param y coordinate selection part
+     * @param width length selection part
+     * @param height length selection part
+     */
+    void render(Surface surface, int x, int y, int width, int height);
+
+    /**
+     * Render textured quads
+     * Each vertex holds SpriteBatch.VERTEX_SIZE floats: x, y, u, v, r, g, b, a
+     * @param surface texture
+     * @param vertices quads vertices starting at position 0
+     * @param count number of quads
+     */
+    void renderQuads(Surface surface, ByteBuffer vertices, int count);
+
+    void fillRec(float x, float y, float w, float h);
+
+    void drawRec(float x, float y, float w, float h);
+
+    /**
+     * Fill convex polygon
+     * @param points x and y of each point
+     * @param count number of points
+     */
+    void fillPolygon(float[] points, int count);
+
+    /**
+     * Fill triangles
+     * @param points x and y of each point, three points per triangle
+     * @param count number of points
+     */
+    void fillTriangles(float[] points, int count);
+
+    /**
+     * Draw lines joining points
+     * @param points x and y of each point
+     * @param count number of points
+     * @param closed join last point to the first one
+     */
+    void drawPolygon(float[] points, int count, boolean closed);
+}
@@ -0,0 +1,572 @@
+package org.cora.graphics.graphics;
+
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+/**
+ * Rasterize on the CPU in a RGBA surface
+ * No GL context is needed, frames can be rendered and compared without display
+ * Rotations are only supported around the z axis
+ * Distance field textures are sampled with bilinear filtering
+ */
+public class SoftwareBackend implements RenderBackend
+{
+    private final static int MAX_DEPTH = 32;
+    private final static int VERTEX_SIZE = SpriteBatch.VERTEX_SIZE;
+
+    private Surface target;
+    private int     width;
+    private int     height;
+    private int     vx, vy, vw, vh;
+
+    private float r, g, b, a;
+    private float lineSize;
+
+    private float[] matrix;
+    private float[] stack;
+    private int     depth;
+    private int     textures;
+
+    private float[] vertices;
+
+    /**
+     * @param width width of the output
+     * @param height height of the output
+     */
+    public SoftwareBackend(int width, int height)
+    {
+        matrix = new float[6];
+        stack = new float[6 * MAX_DEPTH];
+        vertices = new float[VERTEX_SIZE * 64];
+        textures = 0;
+        init(width, height);
+    }
+
+    /**
+     * @return surface holding the rendered frame
+     */
+    public Surface getTarget()
+    {
+        return target;
+    }
+
+    /**
+     * @return checksum of the rendered frame
+     */
+    public long checksum()
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer pixels = target.pixels.duplicate();
+        pixels.clear();
+        byte[] row = new byte[target.w * 4];
+        while (pixels.hasRemaining())
+        {
+            pixels.get(row);
+            crc.update(row);
+        }
+        return crc.getValue();
+    }
+
+    @Override
+    public void init(int width, int height)
+    {
+        this.width = width;
+        this.height = height;
+
+        if (target == null || target.w != width || target.h != height)
+        {
+            target = new Surface();
+            target.w = width;
+            target.h = height;
+            target.BytesPerPixel = 4;
+            target.textureName = "software-output";
+            target.pixels = BufferUtils.createByteBuffer(width * height * 4);
+        }
+
+        setViewport(0, 0, width, height);
+        setColor(1.0f, 1.0f, 1.0f, 1.0f);
+        lineSize = 1.0f;
+        depth = 0;
+        loadIdentity();
+        clear();
+    }
+
+    @Override
+    public void clear()
+    {
+        ByteBuffer pixels = target.pixels;
+        for (int i = 0; i < pixels.capacity(); i++)
+        {
+            pixels.put(i, (byte) 0);
+        }
+    }
+
+    @Override
+    public void endFrame()
+    {
+    }
+
+    @Override
+    public void setViewport(int x, int y, int width, int height)
+    {
+        vx = x;
+        vy = y;
+        vw = width;
+        vh = height;
+    }
+
+    @Override
+    public void setColor(float r, float g, float b, float a)
+    {
+        this.r = r;
+        this.g = g;
+        this.b = b;
+        this.a = a;
+    }
+
+    @Override
+    public void setLineSize(float s)
+    {
+        lineSize = s;
+    }
+
+    // Matrix stack
+
+    private void loadIdentity()
+    {
+        matrix[0] = 1; matrix[1] = 0;
+        matrix[2] = 0; matrix[3] = 1;
+        matrix[4] = 0; matrix[5] = 0;
+    }
+
+    @Override
+    public void pushMatrix()
+    {
+        if (depth == MAX_DEPTH)
+            throw new IllegalStateException("Matrix stack overflow");
+
+        System.arraycopy(matrix, 0, stack, depth * 6, 6);
+        depth++;
+    }
+
+    @Override
+    public void popMatrix()
+    {
+        if (depth == 0)
+            throw new IllegalStateException("Matrix stack underflow");
+
+        depth--;
+        System.arraycopy(stack, depth * 6, matrix, 0, 6);
+    }
+
+    @Override
+    public void translate(float x, float y)
+    {
+        matrix[4] += matrix[0] * x + matrix[2] * y;
+        matrix[5] += matrix[1] * x + matrix[3] * y;
+    }
+
+    @Override
+    public void scale(float x, float y)
+    {
+        matrix[0] *= x;
+        matrix[1] *= x;
+        matrix[2] *= y;
+        matrix[3] *= y;
+    }
+
+    @Override
+    public void rotate(float degrees, float x, float y, float z)
+    {
+        if (x != 0 || y != 0 || z == 0)
+            return;
+
+        double rad = Math.toRadians((z > 0) ? degrees : -degrees);
+        float cos = (float) Math.cos(rad);
+        float sin = (float) Math.sin(rad);
+
+        float m0 = matrix[0], m1 = matrix[1];
+        matrix[0] = m0 * cos + matrix[2] * sin;
+        matrix[1] = m1 * cos + matrix[3] * sin;
+        matrix[2] = -m0 * sin + matrix[2] * cos;
+        matrix[3] = -m1 * sin + matrix[3] * cos;
+    }
+
+    // Textures
+
+    @Override
+    public void loadTexture(Surface surface)
+    {
+        surface.texture = ++textures;
+    }
+
+    @Override
+    public void updateTexture(Surface surface, int x, int y, int width, int height)
+    {
+        // Pixels are read from the surface when rendering
+    }
+
+    @Override
+    public void freeTexture(int texture)
+    {
+    }
+
+    // Drawing
+
+    @Override
+    public void render(Surface surface, int x, int y, int width, int height)
+    {
+        float u1 = ((float) x) / surface.w;
+        float u2 = ((float) x + width) / surface.w;
+        float v1 = ((float) y) / surface.h;
+        float v2 = ((float) y + height) / surface.h;
+
+        setVertex(0, x, y, u1, v1, r, g, b, a);
+        setVertex(1, x + width, y, u2, v1, r, g, b, a);
+        setVertex(2, x + width, y + height, u2, v2, r, g, b, a);
+        setVertex(3, x, y + height, u1, v2, r, g, b, a);
+
+        fillTriangle(0, 1, 2, surface);
+        fillTriangle(0, 2, 3, surface);
+    }
+
+    @Override
+    public void renderQuads(Surface surface, ByteBuffer data, int count)
+    {
+        int offset = 0;
+        for (int q = 0; q < count; q++)
+        {
+            for (int i = 0; i < 4; i++)
+            {
+                setVertex(i, data.getFloat(offset), data.getFloat(offset + 4),
+                        data.getFloat(offset + 8), data.getFloat(offset + 12),
+                        data.getFloat(offset + 16), data.getFloat(offset + 20),
+                        data.getFloat(offset + 24), data.getFloat(offset + 28));
+                offset += VERTEX_SIZE * 4;
+            }
+
+            fillTriangle(0, 1, 2, surface);
+            fillTriangle(0, 2, 3, surface);
+        }
+    }
+
+    @Override
+    public void fillRec(float x, float y, float w, float h)
+    {
+        setVertex(0, x, y);
+        setVertex(1, x + w, y);
+        setVertex(2, x + w, y + h);
+        setVertex(3, x, y + h);
+
+        fillTriangle(0, 1, 2, null);
+        fillTriangle(0, 2, 3, null);
+    }
+
+    @Override
+    public void drawRec(float x, float y, float w, float h)
+    {
+        float[] points = {x, y, x + w, y, x + w, y + h, x, y + h};
+        drawPolygon(points, 4, true);
+    }
+
+    @Override
+    public void fillPolygon(float[] points, int count)
+    {
+        if (count < 3)
+            return;
+
+        setVertex(0, points[0], points[1]);
+        for (int i = 2; i < count; i++)
+        {
+            setVertex(1, points[i * 2 - 2], points[i * 2 - 1]);
+            setVertex(2, points[i * 2], points[i * 2 + 1]);
+            fillTriangle(0, 1, 2, null);
+        }
+    }
+
+    @Override
+    public void fillTriangles(float[] points, int count)
+    {
+        for (int i = 0; i + 2 < count; i += 3)
+        {
+            setVertex(0, points[i * 2], points[i * 2 + 1]);
+            setVertex(1, points[i * 2 + 2], points[i * 2 + 3]);
+            setVertex(2, points[i * 2 + 4], points[i * 2 + 5]);
+            fillTriangle(0, 1, 2, null);
+        }
+    }
+
+    @Override
+    public void drawPolygon(float[] points, int count, boolean closed)
+    {
+        if (count < 2)
+            return;
+
+        for (int i = 0; i < count - 1; i++)
+        {
+            drawSegment(points[i * 2], points[i * 2 + 1], points[i * 2 + 2], points[i * 2 + 3]);
+        }
+
+        if (closed)
+            drawSegment(points[count * 2 - 2], points[count * 2 - 1], points[0], points[1]);
+        else
+            plot(points[count * 2 - 2], points[count * 2 - 1]);
+    }
+
+    // Rasterization
+
+    private void setVertex(int i, float x, float y)
+    {
+        setVertex(i, x, y, 0, 0, r, g, b, a);
+    }
+
+    /**
+     * Store vertex transformed to output coordinates
+     */
+    private void setVertex(int i, float x, float y, float u, float v,
+                           float r, float g, float b, float a)
+    {
+        int offset = i * VERTEX_SIZE;
+        vertices[offset]     = toOutputX(matrix[0] * x + matrix[2] * y + matrix[4]);
+        vertices[offset + 1] = toOutputY(matrix[1] * x + matrix[3] * y + matrix[5]);
+        vertices[offset + 2] = u;
+        vertices[offset + 3] = v;
+        vertices[offset + 4] = r;
+        vertices[offset + 5] = g;
+        vertices[offset + 6] = b;
+        vertices[offset + 7] = a;
+    }
+
+    private float toOutputX(float x)
+    {
+        return vx + x * vw / width;
+    }
+
+    private float toOutputY(float y)
+    {
+        return (target.h - vy - vh) + y * vh / height;
+    }
+
+    private static float edge(float ax, float ay, float bx, float by, float x, float y)
+    {
+        return (bx - ax) * (y - ay) - (by - ay) * (x - ax);
+    }
+
+    /**
+     * Shared edges are only rasterized by one of the two triangles
+     */
+    private static boolean isOwnedEdge(float ax, float ay, float bx, float by)
+    {
+        float dy = by - ay;
+        return dy > 0 || (dy == 0 && bx - ax < 0);
+    }
+
+    private void fillTriangle(int i0, int i1, int i2, Surface texture)
+    {
+        float[] v = vertices;
+        int o0 = i0 * VERTEX_SIZE;
+        int o1 = i1 * VERTEX_SIZE;
+        int o2 = i2 * VERTEX_SIZE;
+
+        float area = edge(v[o0], v[o0 + 1], v[o1], v[o1 + 1], v[o2], v[o2 + 1]);
+        if (area == 0 || Float.isNaN(area))
+            return;
+
+        if (area < 0)
+        {
+            int tmp = o1;
+            o1 = o2;
+            o2 = tmp;
+            area = -area;
+        }
+
+        float x0 = v[o0], y0 = v[o0 + 1];
+        float x1 = v[o1], y1 = v[o1 + 1];
+        float x2 = v[o2], y2 = v[o2 + 1];
+
+        boolean own0 = isOwnedEdge(x1, y1, x2, y2);
+        boolean own1 = isOwnedEdge(x2, y2, x0, y0);
+        boolean own2 = isOwnedEdge(x0, y0, x1, y1);
+
+        // Output pixels per texel, to keep distance field edges one pixel wide
+        float fieldScale = 1;
+        if (texture != null && texture.distanceSpread > 0)
+        {
+            float texels = Math.abs(edge(v[o0 + 2] * texture.w, v[o0 + 3] * texture.h,
+                    v[o1 + 2] * texture.w, v[o1 + 3] * texture.h,
+                    v[o2 + 2] * texture.w, v[o2 + 3] * texture.h));
+            if (texels > 0)
+                fieldScale = (float) Math.sqrt(area / texels);
+        }
+
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = Math.min(target.w - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxY = Math.min(target.h - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+
+        for (int py = minY; py <= maxY; py++)
+        {
+            float cy = py + 0.5f;
+            for (int px = minX; px <= maxX; px++)
+            {
+                float cx = px + 0.5f;
+
+                float w0 = edge(x1, y1, x2, y2, cx, cy);
+                float w1 = edge(x2, y2, x0, y0, cx, cy);
+                float w2 = edge(x0, y0, x1, y1, cx, cy);
+
+                if (w0 < 0 || w1 < 0 || w2 < 0
+                        || (w0 == 0 && !own0) || (w1 == 0 && !own1) || (w2 == 0 && !own2))
+                    continue;
+
+                w0 /= area;
+                w1 /= area;
+                w2 /= area;
+
+                float sr = w0 * v[o0 + 4] + w1 * v[o1 + 4] + w2 * v[o2 + 4];
+                float sg = w0 * v[o0 + 5] + w1 * v[o1 + 5] + w2 * v[o2 + 5];
+                float sb = w0 * v[o0 + 6] + w1 * v[o1 + 6] + w2 * v[o2 + 6];
+                float sa = w0 * v[o0 + 7] + w1 * v[o1 + 7] + w2 * v[o2 + 7];
+
+                if (texture != null)
+                {
+                    float u = w0 * v[o0 + 2] + w1 * v[o1 + 2] + w2 * v[o2 + 2];
+                    float t = w0 * v[o0 + 3] + w1 * v[o1 + 3] + w2 * v[o2 + 3];
+
+                    if (texture.distanceSpread > 0)
+                    {
+                        sa *= getCoverage(texture, u, t, fieldScale);
+                        blend(px, py, sr, sg, sb, sa);
+                        continue;
+                    }
+
+                    int tx = clamp((int) Math.floor(u * texture.w), texture.w - 1);
+                    int ty = clamp((int) Math.floor(t * texture.h), texture.h - 1);
+                    int offset = (tx + ty * texture.w) * texture.BytesPerPixel;
+                    ByteBuffer texels = texture.pixels;
+
+                    switch (texture.BytesPerPixel)
+                    {
+                        case 4:
+                            sr *= (texels.get(offset) & 0xFF) / 255.0f;
+                            sg *= (texels.get(offset + 1) & 0xFF) / 255.0f;
+                            sb *= (texels.get(offset + 2) & 0xFF) / 255.0f;
+                            sa *= (texels.get(offset + 3) & 0xFF) / 255.0f;
+                            break;
+                        case 3:
+                            sr *= (texels.get(offset) & 0xFF) / 255.0f;
+                            sg *= (texels.get(offset + 1) & 0xFF) / 255.0f;
+                            sb *= (texels.get(offset + 2) & 0xFF) / 255.0f;
+                            break;
+                        case 1:
+                            float l = (texels.get(offset) & 0xFF) / 255.0f;
+                            sr *= l;
+                            sg *= l;
+                            sb *= l;
+                            break;
+                    }
+                }
+
+                blend(px, py, sr, sg, sb, sa);
+            }
+        }
+    }
+
+    /**
+     * Sample distance field with bilinear filtering
+     * @param scale output pixels per texel
+     * @return part of the output pixel inside the glyph
+     */
+    private static float getCoverage(Surface texture, float u, float t, float scale)
+    {
+        float fx = u * texture.w - 0.5f;
+        float fy = t * texture.h - 0.5f;
+        int x0 = (int) Math.floor(fx);
+        int y0 = (int) Math.floor(fy);
+        float ax = fx - x0;
+        float ay = fy - y0;
+
+        int xa = clamp(x0, texture.w - 1), xb = clamp(x0 + 1, texture.w - 1);
+        int ya = clamp(y0, texture.h - 1), yb = clamp(y0 + 1, texture.h - 1);
+        ByteBuffer texels = texture.pixels;
+
+        float top = (texels.get(xa + ya * texture.w) & 0xFF) * (1 - ax)
+                + (texels.get(xb + ya * texture.w) & 0xFF) * ax;
+        float bottom = (texels.get(xa + yb * texture.w) & 0xFF) * (1 - ax)
+                + (texels.get(xb + yb * texture.w) & 0xFF) * ax;
+        float value = top * (1 - ay) + bottom * ay;
+
+        float distance = (value - 127.5f) * texture.distanceSpread / 127.5f;
+        return Math.max(0, Math.min(1, distance * scale + 0.5f));
+    }
+
+    private void drawSegment(float x0, float y0, float x1, float y1)
+    {
+        float sx0 = toOutputX(matrix[0] * x0 + matrix[2] * y0 + matrix[4]);
+        float sy0 = toOutputY(matrix[1] * x0 + matrix[3] * y0 + matrix[5]);
+        float sx1 = toOutputX(matrix[0] * x1 + matrix[2] * y1 + matrix[4]);
+        float sy1 = toOutputY(matrix[1] * x1 + matrix[3] * y1 + matrix[5]);
+
+        float dx = sx1 - sx0;
+        float dy = sy1 - sy0;
+        int steps = (int) Math.ceil(Math.max(Math.abs(dx), Math.abs(dy)));
+        if (steps == 0)
+            return;
+
+        float incX = dx / steps;
+        float incY = dy / steps;
+        for (int i = 0; i < steps; i++)
+        {
+            plotOutput(sx0 + incX * i, sy0 + incY * i);
+        }
+    }
+
+    private void plot(float x, float y)
+    {
+        plotOutput(toOutputX(matrix[0] * x + matrix[2] * y + matrix[4]),
+                toOutputY(matrix[1] * x + matrix[3] * y + matrix[5]));
+    }
+
+    private void plotOutput(float x, float y)
+    {
+        int size = Math.max(1, Math.round(lineSize));
+        int px = (int) Math.floor(x - (size - 1) * 0.5f);
+        int py = (int) Math.floor(y - (size - 1) * 0.5f);
+
+        for (int j = Math.max(0, py); j < Math.min(target.h, py + size); j++)
+        {
+            for (int i = Math.max(0, px); i < Math.min(target.w, px + size); i++)
+            {
+                blend(i, j, r, g, b, a);
+            }
+        }
+    }
+
+    /**
+     * Blend with source alpha, one minus source alpha
+     */
+    private void blend(int x, int y, float sr, float sg, float sb, float sa)
+    {
+        ByteBuffer pixels = target.pixels;
+        int offset = (x + y * target.w) * 4;
+        float ia = 1.0f - sa;
+
+        pixels.put(offset,     toByte(sr * sa * 255 + (pixels.get(offset) & 0xFF) * ia));
+        pixels.put(offset + 1, toByte(sg * sa * 255 + (pixels.get(offset + 1) & 0xFF) * ia));
+        pixels.put(offset + 2, toByte(sb * sa * 255 + (pixels.get(offset + 2) & 0xFF) * ia));
+        pixels.put(offset + 3, toByte(sa * sa * 255 + (pixels.get(offset + 3) & 0xFF) * ia));
+    }
+
+    private static byte toByte(float v)
+    {
+        int i = (int) (v + 0.5f);
+        return (byte) ((i < 0) ? 0 : (i > 255) ? 255 : i);
+    }
+
+    private static int clamp(int v, int max)
+    {
+        return (v < 0) ? 0 : (v > max) ? max : v;
+    }
+}
@@ -0,0 +1,253 @@
+package org.cora.graphics.graphics;
+
+import org.cora.graphics.base.Image;
+import org.cora.graphics.base.Rect;
+import org.cora.graphics.base.SpriteData;
+import org.cora.graphics.manager.ResidencyManager;
+import org.cora.maths.Rectangle;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Gather textured quads and render them with one draw call per texture
+ * Quads corners are transformed on the CPU and streamed in one vertex buffer,
+ * the buffer is flushed when the texture changes or when it is full
+ */
+public class SpriteBatch
+{
+    public final static int DEFAULT_SIZE = 2048;
+
+    /**
+     * x, y, u, v, r, g, b, a
+     */
+    public final static int VERTEX_SIZE = 8;
+    public final static int QUAD_SIZE   = 4 * VERTEX_SIZE;
+
+    private final RenderBackend backend;
+    private final int           maxQuads;
+    private final float[]       vertices;
+    private final ByteBuffer    buffer;
+    private final FloatBuffer   floatBuffer;
+
+    private Surface surface;
+    private int     quads;
+    private boolean isDrawing;
+    private int     drawCalls;
+
+    private ResidencyManager residency;
+
+    /**
+     * @param backend drawing surface
+     */
+    public SpriteBatch(RenderBackend backend)
+    {
+        this(backend, DEFAULT_SIZE);
+    }
+
+    /**
+     * @param backend drawing surface
+     * @param maxQuads number of quads stored before flushing
+     */
+    public SpriteBatch(RenderBackend backend, int maxQuads)
+    {
+        this.backend = backend;
+        this.maxQuads = maxQuads;
+        vertices = new float[maxQuads * QUAD_SIZE];
+        buffer = BufferUtils.createByteBuffer(vertices.length * 4);
+        floatBuffer = buffer.asFloatBuffer();
+        surface = null;
+        quads = 0;
+        isDrawing = false;
+        drawCalls = 0;
+        residency = null;
+    }
+
+    /**
+     * @param residency textures are reported as used when they are added, null to disable
+     */
+    public void setResidencyManager(ResidencyManager residency)
+    {
+        this.residency = residency;
+    }
+
+    /**
+     * Start gathering quads
+     */
+    public void begin()
+    {
+        if (isDrawing)
+            throw new IllegalStateException("SpriteBatch.end must be called before begin");
+
+        isDrawing = true;
+        drawCalls = 0;
+    }
+
+    /**
+     * Render remaining quads and stop gathering
+     */
+    public void end()
+    {
+        if (!isDrawing)
+            throw new IllegalStateException("SpriteBatch.begin must be called before end");
+
+        flush();
+        isDrawing = false;
+        surface = null;
+    }
+
+    public boolean isDrawing()
+    {
+        return isDrawing;
+    }
+
+    /**
+     * @return true if quads are waiting to be rendered
+     */
+    public boolean isPending()
+    {
+        return quads != 0;
+    }
+
+    /**
+     * @return number of draw calls issued since begin
+     */
+    public int getDrawCalls()
+    {
+        return drawCalls;
+    }
+
+    /**
+     * Add image to the batch
+     * Same transformations as Graphics.render(Image)
+     *
+     * @param image rendered image
+     */
+    public void draw(Image image)
+    {
+        SpriteData sd = image.getSpriteData();
+        Rectangle rec = image.getRectangle();
+        Rect r = sd.rect;
+
+        float fh = (sd.flipH) ? 1.0f : 0.0f;
+        float fv = (sd.flipV) ? 1.0f : 0.0f;
+
+        float tx = rec.getCenterX() + ((int) rec.getWidth()) * fh;
+        float ty = rec.getCenterY() + ((int) rec.getHeight()) * fv;
+        float sx = rec.getWidth() / r.w * ((sd.flipH) ? -1.0f : 1.0f);
+        float sy = rec.getHeight() / r.h * ((sd.flipV) ? -1.0f : 1.0f);
+
+        float cos = 1.0f;
+        float sin = 0.0f;
+        float angle = rec.getAngle();
+        if (Math.abs(angle) > 0.001f && Math.abs(angle - Math.PI * 2) > 0.001f)
+        {
+            cos = (float) Math.cos(angle);
+            sin = (float) Math.sin(angle);
+        }
+
+        // Corners relative to the rotation center
+        float x1 = -r.w * (0.5f - fh);
+        float y1 = -r.h * (0.5f - fv);
+        float x2 = x1 + r.w;
+        float y2 = y1 + r.h;
+
+        float ax = cos * sx, bx = -sin * sx;
+        float ay = sin * sy, by = cos * sy;
+
+        int offset = prepare(sd.surface);
+
+        myColor color = image.getColor();
+        float u1 = ((float) r.x) / sd.surface.w;
+        float u2 = ((float) r.x + r.w) / sd.surface.w;
+        float v1 = ((float) r.y) / sd.surface.h;
+        float v2 = ((float) r.y + r.h) / sd.surface.h;
+
+        offset = put(offset, ax * x1 + bx * y1 + tx, ay * x1 + by * y1 + ty, u1, v1, color);
+        offset = put(offset, ax * x2 + bx * y1 + tx, ay * x2 + by * y1 + ty, u2, v1, color);
+        offset = put(offset, ax * x2 + bx * y2 + tx, ay * x2 + by * y2 + ty, u2, v2, color);
+        put(offset, ax * x1 + bx * y2 + tx, ay * x1 + by * y2 + ty, u1, v2, color);
+        quads++;
+    }
+
+    /**
+     * Add part of texture to the batch
+     *
+     * @param surface texture
+     * @param rx      coordinate selection part
+     * @param ry      coordinate selection part
+     * @param rw      length selection part
+     * @param rh      length selection part
+     * @param x       rendering position
+     * @param y       rendering position
+     * @param w       rendering width
+     * @param h       rendering height
+     * @param color   vertices color
+     */
+    public void draw(Surface surface, int rx, int ry, int rw, int rh,
+                     float x, float y, float w, float h, myColor color)
+    {
+        int offset = prepare(surface);
+
+        float u1 = ((float) rx) / surface.w;
+        float u2 = ((float) rx + rw) / surface.w;
+        float v1 = ((float) ry) / surface.h;
+        float v2 = ((float) ry + rh) / surface.h;
+
+        offset = put(offset, x, y, u1, v1, color);
+        offset = put(offset, x + w, y, u2, v1, color);
+        offset = put(offset, x + w, y + h, u2, v2, color);
+        put(offset, x, y + h, u1, v2, color);
+        quads++;
+    }
+
+    /**
+     * Render stored quads
+     */
+    public void flush()
+    {
+        if (quads == 0)
+            return;
+
+        floatBuffer.clear();
+        floatBuffer.put(vertices, 0, quads * QUAD_SIZE);
+
+        backend.renderQuads(surface, buffer, quads);
+
+        quads = 0;
+        drawCalls++;
+    }
+
+    /**
+     * Flush if the texture changes or the buffer is full
+     *
+     * @param surface texture of the next quad
+     *
+     * @return offset of the next quad in vertices
+     */
+    private int prepare(Surface surface)
+    {
+        if (this.surface != surface || quads == maxQuads)
+        {
+            flush();
+            this.surface = surface;
+            if (residency != null)
+                residency.use(surface);
+        }
+        return quads * QUAD_SIZE;
+    }
+
+    private int put(int offset, float x, float y, float u, float v, myColor color)
+    {
+        vertices[offset]     = x;
+        vertices[offset + 1] = y;
+        vertices[offset + 2] = u;
+        vertices[offset + 3] = v;
+        vertices[offset + 4] = color.r;
+        vertices[offset + 5] = color.g;
+        vertices[offset + 6] = color.b;
+        vertices[offset + 7] = color.a;
+        return offset + VERTEX_SIZE;
+    }
+}
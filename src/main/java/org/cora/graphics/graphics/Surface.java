@@ -10,4 +10,35 @@ public class Surface
     public int w;
     public int h;
     public int BytesPerPixel;
+
+    /**
+     * Image the surface was loaded from, null if created in memory
+     */
+    public String sourceFile;
+    public boolean isInternal;
+
+    /**
+     * Frame of the last rendering, set when residency is managed
+     */
+    public long lastUsedFrame;
+
+    /**
+     * Pixels are read on the CPU, like font glyphs, and are never released
+     * by residency management
+     */
+    public boolean keepPixels;
+
+    /**
+     * Distance in pixels mapped to the whole range of a distance field with
+     * one byte per pixel, 0 if pixels are colors
+     */
+    public int distanceSpread;
+
+    /**
+     * @return size of pixels in bytes
+     */
+    public int getByteSize()
+    {
+        return w * h * BytesPerPixel;
+    }
 }
@@ -0,0 +1,307 @@
+package org.cora.graphics.input;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Named actions bound to keys, mouse buttons or chords of them
+ * Bindings are compiled in int arrays indexed by action id, and all actions are
+ * evaluated once per frame by update. State of an action is then read by id.
+ * An action is down when all codes of one of its bindings are down.
+ */
+public class ActionMap
+{
+    /**
+     * Codes from MOUSE_BUTTON_OFFSET are mouse buttons, codes below are keys
+     */
+    public final static int MOUSE_BUTTON_OFFSET = 65536;
+    public final static int MOUSE_BUTTONS = 2;
+
+    private final ArrayList<String> names;
+    private final HashMap<String, Integer> ids;
+    private final ArrayList<ArrayList<int[]>> bindings;
+
+    // Compiled bindings: bindings of action i are from actionStarts[i] to
+    // actionStarts[i + 1], codes of binding j from bindingStarts[j] to bindingStarts[j + 1]
+    private boolean isCompiled;
+    private int actionStarts[];
+    private int bindingStarts[];
+    private int codes[];
+
+    // State of each action, one bit per action
+    private long down[];
+    private long pressed[];
+    private long released[];
+    private float heldTime[];
+
+    public ActionMap()
+    {
+        names = new ArrayList<String>();
+        ids = new HashMap<String, Integer>();
+        bindings = new ArrayList<ArrayList<int[]>>();
+
+        isCompiled = false;
+        down = new long[1];
+        pressed = new long[1];
+        released = new long[1];
+        heldTime = new float[64];
+    }
+
+    /**
+     * @param n mouse button, Input.MOUSE_BUTTON_1 or Input.MOUSE_BUTTON_2
+     * @return code of mouse button for bindings
+     */
+    public static int mouseButton(int n)
+    {
+        return MOUSE_BUTTON_OFFSET + n;
+    }
+
+    /**
+     * Add action without binding
+     *
+     * @param name action name
+     * @return action id, existing id if already added
+     */
+    public int addAction(String name)
+    {
+        Integer id = ids.get(name);
+        if (id != null)
+            return id;
+
+        int action = names.size();
+        names.add(name);
+        ids.put(name, action);
+        bindings.add(new ArrayList<int[]>());
+
+        int words = (action >> 6) + 1;
+        if (words > down.length)
+        {
+            down = Arrays.copyOf(down, words * 2);
+            pressed = Arrays.copyOf(pressed, words * 2);
+            released = Arrays.copyOf(released, words * 2);
+            heldTime = Arrays.copyOf(heldTime, words * 2 * 64);
+        }
+        isCompiled = false;
+        return action;
+    }
+
+    /**
+     * @param name action name
+     * @return action id, -1 if not found
+     */
+    public int getAction(String name)
+    {
+        Integer id = ids.get(name);
+        return (id == null) ? -1 : id;
+    }
+
+    public String getName(int action)
+    {
+        return names.get(action);
+    }
+
+    public int getActionCount()
+    {
+        return names.size();
+    }
+
+    /**
+     * Add binding to action, action is down when all codes are down
+     *
+     * @param action action id
+     * @param codes  keys, or mouse buttons from mouseButton
+     */
+    public void bind(int action, int... codes)
+    {
+        if (codes.length == 0)
+            return;
+
+        for (int code : codes)
+        {
+            if (code < 0 || code >= MOUSE_BUTTON_OFFSET + MOUSE_BUTTONS)
+            {
+                System.out.println("Can't bind code " + code + " to action " + names.get(action));
+                return;
+            }
+        }
+
+        bindings.get(action).add(codes.clone());
+        isCompiled = false;
+    }
+
+    /**
+     * Add binding to action, action is added if needed
+     *
+     * @param name  action name
+     * @param codes keys, or mouse buttons from mouseButton
+     * @return action id
+     */
+    public int bind(String name, int... codes)
+    {
+        int action = addAction(name);
+        bind(action, codes);
+        return action;
+    }
+
+    /**
+     * Remove all bindings of action
+     *
+     * @param action action id
+     */
+    public void unbind(int action)
+    {
+        bindings.get(action).clear();
+        isCompiled = false;
+    }
+
+    /**
+     * Replace bindings of action by one binding
+     *
+     * @param action action id
+     * @param codes  keys, or mouse buttons from mouseButton
+     */
+    public void rebind(int action, int... codes)
+    {
+        unbind(action);
+        bind(action, codes);
+    }
+
+    /**
+     * Evaluate all actions, call once per frame after input update
+     *
+     * @param input input state
+     * @param dt    elapsed time
+     */
+    public void update(Input input, float dt)
+    {
+        if (!isCompiled)
+            compile();
+
+        int actionCount = actionStarts.length - 1;
+        for (int action = 0; action < actionCount; action++)
+        {
+            boolean isDown = false;
+            boolean isTriggered = false;
+
+            for (int b = actionStarts[action]; b < actionStarts[action + 1] && !isDown; b++)
+            {
+                boolean allDown = true;
+                boolean allActive = true;
+                boolean anyPressed = false;
+                for (int i = bindingStarts[b]; i < bindingStarts[b + 1]; i++)
+                {
+                    int code = codes[i];
+                    boolean codeDown;
+                    boolean codePressed;
+                    if (code < MOUSE_BUTTON_OFFSET)
+                    {
+                        codeDown = input.isKeyDown(code);
+                        codePressed = input.isKeyPressed(code);
+                    }
+                    else
+                    {
+                        codeDown = input.isMouseDown(code - MOUSE_BUTTON_OFFSET);
+                        codePressed = input.isMousePressed(code - MOUSE_BUTTON_OFFSET);
+                    }
+
+                    allDown &= codeDown;
+                    allActive &= codeDown || codePressed;
+                    anyPressed |= codePressed;
+                }
+
+                isDown = allDown;
+                // Chord completed this frame, even if already released
+                isTriggered |= allActive && anyPressed;
+            }
+
+            int word = action >> 6;
+            long bit = 1L << action;
+            boolean wasDown = (down[word] & bit) != 0;
+            boolean isPressed = !wasDown && (isDown || isTriggered);
+            boolean isReleased = (wasDown || isPressed) && !isDown;
+
+            down[word] = isDown ? down[word] | bit : down[word] & ~bit;
+            pressed[word] = isPressed ? pressed[word] | bit : pressed[word] & ~bit;
+            released[word] = isReleased ? released[word] | bit : released[word] & ~bit;
+            heldTime[action] = isDown ? heldTime[action] + dt : 0;
+        }
+    }
+
+    public boolean isDown(int action)
+    {
+        return (down[action >> 6] & (1L << action)) != 0;
+    }
+
+    /**
+     * @return action became down since last update
+     */
+    public boolean isPressed(int action)
+    {
+        return (pressed[action >> 6] & (1L << action)) != 0;
+    }
+
+    /**
+     * @return action stopped being down since last update
+     */
+    public boolean isReleased(int action)
+    {
+        return (released[action >> 6] & (1L << action)) != 0;
+    }
+
+    /**
+     * @return time since action is down, 0 if not down
+     */
+    public float getHeldTime(int action)
+    {
+        return heldTime[action];
+    }
+
+    /**
+     * Clear state of all actions
+     */
+    public void clear()
+    {
+        Arrays.fill(down, 0);
+        Arrays.fill(pressed, 0);
+        Arrays.fill(released, 0);
+        Arrays.fill(heldTime, 0);
+    }
+
+    /**
+     * Flatten bindings in arrays read by update
+     */
+    private void compile()
+    {
+        int actionCount = names.size();
+        int bindingCount = 0;
+        int codeCount = 0;
+        for (ArrayList<int[]> actionBindings : bindings)
+        {
+            bindingCount += actionBindings.size();
+            for (int[] binding : actionBindings)
+                codeCount += binding.length;
+        }
+
+        actionStarts = new int[actionCount + 1];
+        bindingStarts = new int[bindingCount + 1];
+        codes = new int[codeCount];
+
+        int b = 0;
+        int c = 0;
+        for (int action = 0; action < actionCount; action++)
+        {
+            actionStarts[action] = b;
+            for (int[] binding : bindings.get(action))
+            {
+                bindingStarts[b++] = c;
+                System.arraycopy(binding, 0, codes, c, binding.length);
+                c += binding.length;
+            }
+        }
+        actionStarts[actionCount] = b;
+        bindingStarts[bindingCount] = c;
+
+        isCompiled = true;
+    }
+}
@@ -6,17 +6,29 @@ import org.lwjgl.glfw.GLFWKeyCallback;
 import org.lwjgl.glfw.GLFWMouseButtonCallback;
 import org.lwjgl.glfw.GLFWScrollCallback;
 
+import java.util.Arrays;
+
 import static org.lwjgl.glfw.GLFW.*;
 
 public class Input
 {
-    private String temp;
+    private TextBuffer text;
 
     private GLFWKeyCallback keyCallback;
     private GLFWMouseButtonCallback mouseButtonCallback;
     private GLFWCursorPosCallback mouseMotionCallback;
     private GLFWScrollCallback mouseScrollCallback;
 
+    // Events published by callbacks and drained by processEvents
+    private InputEventQueue events;
+    private final InputEvent event = new InputEvent();
+    private InputEventListener eventListener;
+
+    // Statistics of the last processed events
+    private int eventCount;
+    private int coalescedMoves;
+    private int coalescedScrolls;
+
     public static final int KEY_ENTER = GLFW_KEY_ENTER;
     public static final int KEY_ESC = GLFW_KEY_ESCAPE;
     public static final int KEY_SPACE = GLFW_KEY_SPACE;
@@ -40,13 +52,29 @@ public class Input
     private int mouseWheelX;
     private int mouseWheelY;
 
+    // One bit per key
     private boolean keyDown;
-    private boolean keysDown[] = new boolean[NUMBER_OF_KEYS];
+    private long keysDown[] = new long[NUMBER_OF_KEYS >> 6];
     private boolean keyPressed;
-    private boolean keysPressed[] = new boolean[NUMBER_OF_KEYS];
+    private long keysPressed[] = new long[NUMBER_OF_KEYS >> 6];
+
+    // Keys pressed since last clear, only these bits are cleared each frame
+    private int pressedKeys[] = new int[16];
+    private int pressedCount;
 
     public Input()
     {
+        this(InputEventQueue.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param eventCapacity number of events kept between two updates
+     */
+    public Input(int eventCapacity)
+    {
+        events = new InputEventQueue(eventCapacity);
+        eventListener = null;
+
         quit = false;
         azerty = true;
 
@@ -60,7 +88,7 @@ public class Input
         mouseWheelX = 0;
         mouseWheelY = 0;
         tlastChar = 0;
-        temp = "";
+        text = new TextBuffer();
 
         clear();
         keyCallback = new KeyboardListener();
@@ -161,12 +189,12 @@ public class Input
 
     public boolean isKeyDown(int n)
     {
-        return keysDown[n];
+        return getBit(keysDown, n);
     }
 
     public boolean isKeyPressed(int n)
     {
-        return keysPressed[n];
+        return getBit(keysPressed, n);
     }
 
     // Clear
@@ -237,32 +265,84 @@ public class Input
     public void clearKeysDown()
     {
         keyDown = false;
-        for (int i = 0; i < NUMBER_OF_KEYS; i++)
-        {
-            keysDown[i] = false;
-        }
+        Arrays.fill(keysDown, 0);
     }
 
     public void clearKeyDown(int n)
     {
-        keysDown[n] = false;
+        clearBit(keysDown, n);
     }
 
     public void clearKeysPressed()
     {
         keyPressed = false;
-        for (int i = 0; i < NUMBER_OF_KEYS; i++)
+        for (int i = 0; i < pressedCount; i++)
         {
-            keysPressed[i] = false;
+            clearBit(keysPressed, pressedKeys[i]);
         }
+        pressedCount = 0;
     }
 
     public void clearKeyPressed(int n)
     {
-        keysPressed[n] = false;
+        clearBit(keysPressed, n);
+    }
+
+    private void setKeyPressed(int n)
+    {
+        if (getBit(keysPressed, n))
+            return;
+
+        setBit(keysPressed, n);
+        if (pressedCount == pressedKeys.length)
+            pressedKeys = Arrays.copyOf(pressedKeys, pressedCount * 2);
+        pressedKeys[pressedCount++] = n;
     }
 
+    private static boolean getBit(long bits[], int n)
+    {
+        return (bits[n >> 6] & (1L << n)) != 0;
+    }
+
+    private static void setBit(long bits[], int n)
+    {
+        bits[n >> 6] |= 1L << n;
+    }
+
+    private static void clearBit(long bits[], int n)
+    {
+        bits[n >> 6] &= ~(1L << n);
+    }
+
+    /**
+     * Poll window events and process them
+     * Same as pollEvents and processEvents, on the same thread
+     *
+     * @param dt elapsed time
+     */
     public void update(float dt)
+    {
+        glfwPollEvents();
+        processEvents(dt);
+    }
+
+    /**
+     * Poll window events, must be called on the main thread
+     * Events are kept until processEvents
+     */
+    public void pollEvents()
+    {
+        glfwPollEvents();
+    }
+
+    /**
+     * Apply waiting events in order to input state
+     * Can be called from another thread than pollEvents, as long as only one
+     * thread processes events
+     *
+     * @param dt elapsed time
+     */
+    public void processEvents(float dt)
     {
         tlastChar += dt;
         mouseWheelX = 0;
@@ -271,7 +351,104 @@ public class Input
         mouseScrolls = false;
         clearMousePressed();
         clearKeysPressed();
-        glfwPollEvents();
+
+        int moves = 0;
+        int scrolls = 0;
+        double wheelX = 0;
+        double wheelY = 0;
+        eventCount = 0;
+
+        while (events.poll(event))
+        {
+            eventCount++;
+            switch (event.type)
+            {
+                case InputEvent.KEY:
+                    applyKey(event.code, event.action, event.mods);
+                    break;
+
+                case InputEvent.MOUSE_BUTTON:
+                    applyMouseButton(event.code, event.action);
+                    break;
+
+                case InputEvent.MOUSE_MOVE:
+                    mousePos[0] = (int) event.x;
+                    mousePos[1] = (int) event.y;
+                    mouseMoves = true;
+                    moves++;
+                    break;
+
+                case InputEvent.MOUSE_SCROLL:
+                    wheelX += event.x;
+                    wheelY += event.y;
+                    mouseScrolls = true;
+                    scrolls++;
+                    break;
+            }
+
+            if (eventListener != null)
+                eventListener.onEvent(event);
+        }
+
+        // Scroll offsets received since last update are added
+        mouseWheelX = (int) wheelX;
+        mouseWheelY = (int) wheelY;
+
+        coalescedMoves = Math.max(0, moves - 1);
+        coalescedScrolls = Math.max(0, scrolls - 1);
+    }
+
+    /**
+     * @return events published by window callbacks
+     */
+    public InputEventQueue getEvents()
+    {
+        return events;
+    }
+
+    /**
+     * @param eventListener receives each event when processed, null to remove
+     */
+    public void setEventListener(InputEventListener eventListener)
+    {
+        this.eventListener = eventListener;
+    }
+
+    public InputEventListener getEventListener()
+    {
+        return eventListener;
+    }
+
+    /**
+     * @return number of events applied by last processEvents
+     */
+    public int getEventCount()
+    {
+        return eventCount;
+    }
+
+    /**
+     * @return number of mouse moves merged in the last mouse position by last processEvents
+     */
+    public int getCoalescedMoves()
+    {
+        return coalescedMoves;
+    }
+
+    /**
+     * @return number of scrolls merged in the mouse wheel by last processEvents
+     */
+    public int getCoalescedScrolls()
+    {
+        return coalescedScrolls;
+    }
+
+    /**
+     * @return number of events lost because too many events were received between two updates
+     */
+    public long getDroppedEvents()
+    {
+        return events.getDropped();
     }
 
     private static boolean isAlphaNumeric(int scancode)
@@ -311,101 +488,134 @@ public class Input
         return key;
     }
 
-    private class KeyboardListener extends GLFWKeyCallback
+    private void applyKey(int key, int action, int mods)
     {
-        @Override
-        public void invoke(long window, int key, int scancode, int action,
-                           int mods)
+        if (key < 0 || key >= NUMBER_OF_KEYS)
+            return;
+
+        if (azerty)
+        {
+            key = convertAzerty(key);
+        }
+        if (action == GLFW_PRESS || action == GLFW_REPEAT)
+        {
+            applyText(key, mods, getBit(keysDown, key));
+        }
+
+        if (action == GLFW_PRESS)
+        {
+            if (getBit(keysDown, key))
+                clearBit(keysPressed, key);
+            else
+                setKeyPressed(key);
+            setBit(keysDown, key);
+        }
+        else if (action == GLFW_RELEASE)
+        {
+            clearBit(keysDown, key);
+        }
+    }
+
+    /**
+     * Edit typed text with key
+     * A key held down is repeated at most once every WAIT_LAST_CHAR
+     *
+     * @param isRepeat key was already down
+     */
+    private void applyText(int key, int mods, boolean isRepeat)
+    {
+        int n = 1;
+        if (isRepeat)
         {
-            if (key >= NUMBER_OF_KEYS)
+            if (tlastChar <= WAIT_LAST_CHAR)
                 return;
+            n = (int) (tlastChar / WAIT_LAST_CHAR);
+        }
 
-            if (azerty)
-            {
-                key = convertAzerty(key);
-            }
-            if (action == GLFW_PRESS)
+        boolean select = (mods & GLFW_MOD_SHIFT) != 0;
+        if (isAlphaNumeric(key))
+        {
+            text.insert((char) key);
+        }
+        else if (key == GLFW_KEY_BACKSPACE)
+        {
+            text.deleteBackward(n);
+        }
+        else if (key == GLFW_KEY_DELETE)
+        {
+            text.deleteForward(n);
+        }
+        else if (key == GLFW_KEY_LEFT)
+        {
+            text.moveCaret(-n, select);
+        }
+        else if (key == GLFW_KEY_RIGHT)
+        {
+            text.moveCaret(n, select);
+        }
+        else if (key == GLFW_KEY_HOME)
+        {
+            text.setCaret(text.getLineStart(text.getCaret()), select);
+        }
+        else if (key == GLFW_KEY_END)
+        {
+            text.setCaret(text.getLineEnd(text.getCaret()), select);
+        }
+        else
+        {
+            return;
+        }
+        tlastChar = 0;
+    }
+
+    private void applyMouseButton(int button, int action)
+    {
+        if (action == GLFW_PRESS)
+        {
+            switch (button)
             {
-                if (isAlphaNumeric(key))
-                {
-                    if (keysDown[key])
-                    {
-                        if (tlastChar > WAIT_LAST_CHAR)
-                        {
-                            int n = (int) (tlastChar / WAIT_LAST_CHAR);
-                            tlastChar = 0;
-                            temp += (char) key;
-                        }
-                    }
-                    else
-                    {
-                        temp += (char) key;
-                        tlastChar = 0;
-                    }
-                }
-                else if (key == GLFW_KEY_BACKSPACE)
-                {
-                    if (keysDown[key])
-                    {
-                        if (tlastChar > WAIT_LAST_CHAR)
-                        {
-                            int n = (int) (tlastChar / WAIT_LAST_CHAR);
-                            int length = temp.length() - n;
-                            temp = temp.substring(0, (length > 0) ? length : 0);
-                            tlastChar = 0;
-                        }
-                    }
-                    else
-                    {
-                        tlastChar = 0;
-                        int length = temp.length() - 1;
-                        temp = temp.substring(0, (length > 0) ? length : 0);
-                    }
-                }
-
-                keysPressed[key] = !keysDown[key];
-                keysDown[key] = true;
+                case GLFW_MOUSE_BUTTON_1:
+                    mouseButtonsPressed[MOUSE_BUTTON_1] = !mouseButtonsDown[0];
+                    mouseButtonsDown[MOUSE_BUTTON_1] = true;
+                    break;
+
+                case GLFW_MOUSE_BUTTON_2:
+                    mouseButtonsPressed[MOUSE_BUTTON_2] = !mouseButtonsDown[1];
+                    mouseButtonsDown[MOUSE_BUTTON_2] = true;
+                    break;
             }
-            else if (action == GLFW_RELEASE)
+        }
+        else
+        {
+            switch (button)
             {
-                keysDown[key] = false;
+                case GLFW_MOUSE_BUTTON_1:
+                    mouseButtonsDown[MOUSE_BUTTON_1] = false;
+                    break;
+
+                case GLFW_MOUSE_BUTTON_2:
+                    mouseButtonsDown[MOUSE_BUTTON_2] = false;
+                    break;
             }
         }
     }
 
+    private class KeyboardListener extends GLFWKeyCallback
+    {
+        @Override
+        public void invoke(long window, int key, int scancode, int action,
+                           int mods)
+        {
+            events.offer(InputEvent.KEY, key, action, mods, 0, 0, System.nanoTime());
+        }
+    }
+
     private class MouseButtonsListener extends GLFWMouseButtonCallback
     {
         @Override
         public void invoke(long window, int button, int action, int mods)
         {
-            if (action == GLFW_PRESS)
-            {
-                switch (button)
-                {
-                    case GLFW_MOUSE_BUTTON_1:
-                        mouseButtonsPressed[MOUSE_BUTTON_1] = !mouseButtonsDown[0];
-                        mouseButtonsDown[MOUSE_BUTTON_1] = true;
-                        break;
-
-                    case GLFW_MOUSE_BUTTON_2:
-                        mouseButtonsPressed[MOUSE_BUTTON_2] = !mouseButtonsDown[1];
-                        mouseButtonsDown[MOUSE_BUTTON_2] = true;
-                        break;
-                }
-            }
-            else
-            {
-                switch (button)
-                {
-                    case GLFW_MOUSE_BUTTON_1:
-                        mouseButtonsDown[MOUSE_BUTTON_1] = false;
-                        break;
-
-                    case GLFW_MOUSE_BUTTON_2:
-                        mouseButtonsDown[MOUSE_BUTTON_2] = false;
-                        break;
-                }
-            }
+            events.offer(InputEvent.MOUSE_BUTTON, button, action, mods, 0, 0, System.nanoTime());
         }
     }
 
@@ -414,10 +624,7 @@ public class Input
         @Override
         public void invoke(long window, double xpos, double ypos)
         {
-            mousePos[0] = (int) xpos;
-            mousePos[1] = (int) ypos;
-
-            mouseMoves = true;
+            events.offer(InputEvent.MOUSE_MOVE, 0, 0, 0, xpos, ypos, System.nanoTime());
         }
     }
 
@@ -426,16 +633,21 @@ public class Input
         @Override
         public void invoke(long window, double xoffset, double yoffset)
         {
-            mouseWheelX = (int) xoffset;
-            mouseWheelY = (int) yoffset;
-
-            mouseScrolls = true;
+            events.offer(InputEvent.MOUSE_SCROLL, 0, 0, 0, xoffset, yoffset, System.nanoTime());
         }
     }
 
-    public String getTemp() { return temp; }
+    public String getTemp() { return text.toString(); }
+
+    public void clearTemp() { text.clear(); }
 
-    public void clearTemp() { temp = ""; }
+    /**
+     * @return text typed with keyboard, with caret and selection
+     */
+    public TextBuffer getText()
+    {
+        return text;
+    }
 
     public boolean isAzerty()
     {
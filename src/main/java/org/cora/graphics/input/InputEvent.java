@@ -0,0 +1,36 @@
+package org.cora.graphics.input;
+
+/**
+ * Holds one event received from the window
+ * Events are copied in the same instance when polled, so polling doesn't allocate
+ */
+public class InputEvent
+{
+    public final static int KEY          = 0;
+    public final static int MOUSE_BUTTON = 1;
+    public final static int MOUSE_MOVE   = 2;
+    public final static int MOUSE_SCROLL = 3;
+
+    /**
+     * KEY, MOUSE_BUTTON, MOUSE_MOVE or MOUSE_SCROLL
+     */
+    public int    type;
+
+    /**
+     * Key or mouse button
+     */
+    public int    code;
+    public int    action;
+    public int    mods;
+
+    /**
+     * Mouse position or scroll offset
+     */
+    public double x;
+    public double y;
+
+    /**
+     * System.nanoTime() when the event was received
+     */
+    public long   time;
+}
@@ -0,0 +1,12 @@
+package org.cora.graphics.input;
+
+/**
+ * Receives input events in the order they happened
+ */
+public interface InputEventListener
+{
+    /**
+     * @param event event, reused for next events
+     */
+    void onEvent(InputEvent event);
+}
@@ -0,0 +1,162 @@
+package org.cora.graphics.input;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ring buffer of input events between one producer thread, the one polling
+ * window events, and one consumer thread, the one updating the game
+ * Fields of events are stored in preallocated arrays, no lock is taken and
+ * nothing is allocated. Events are dropped when the buffer is full.
+ */
+public class InputEventQueue
+{
+    public final static int DEFAULT_CAPACITY = 1024;
+
+    private final int    capacity;
+    private final int    mask;
+
+    private final int    types[];
+    private final int    codes[];
+    private final int    actions[];
+    private final int    mods[];
+    private final double xs[];
+    private final double ys[];
+    private final long   times[];
+
+    // Next event written by the producer and next event read by the consumer
+    private final AtomicLong head;
+    private final AtomicLong tail;
+
+    // Last index of the other side seen by the producer and the consumer
+    private long cachedTail;
+    private long cachedHead;
+
+    // Written by the producer only
+    private volatile long dropped;
+    private volatile int  maxSize;
+
+    public InputEventQueue()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of events kept before dropping events, rounded to a power of 2
+     */
+    public InputEventQueue(int capacity)
+    {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = this.capacity - 1;
+
+        types = new int[this.capacity];
+        codes = new int[this.capacity];
+        actions = new int[this.capacity];
+        mods = new int[this.capacity];
+        xs = new double[this.capacity];
+        ys = new double[this.capacity];
+        times = new long[this.capacity];
+
+        head = new AtomicLong();
+        tail = new AtomicLong();
+    }
+
+    /**
+     * Add event, called by the producer thread
+     *
+     * @return false if the buffer is full and the event is dropped
+     */
+    public boolean offer(int type, int code, int action, int mods, double x, double y, long time)
+    {
+        long h = head.get();
+        if (h - cachedTail >= capacity)
+        {
+            cachedTail = tail.get();
+            if (h - cachedTail >= capacity)
+            {
+                dropped++;
+                return false;
+            }
+        }
+
+        int i = (int) h & mask;
+        types[i] = type;
+        codes[i] = code;
+        actions[i] = action;
+        this.mods[i] = mods;
+        xs[i] = x;
+        ys[i] = y;
+        times[i] = time;
+
+        // Fields are visible to the consumer before the new head
+        head.lazySet(h + 1);
+
+        int size = (int) (h + 1 - cachedTail);
+        if (size > maxSize)
+            maxSize = size;
+        return true;
+    }
+
+    /**
+     * Take oldest event, called by the consumer thread
+     *
+     * @param event receives the event fields
+     * @return false if there is no event
+     */
+    public boolean poll(InputEvent event)
+    {
+        long t = tail.get();
+        if (t == cachedHead)
+        {
+            cachedHead = head.get();
+            if (t == cachedHead)
+                return false;
+        }
+
+        int i = (int) t & mask;
+        event.type = types[i];
+        event.code = codes[i];
+        event.action = actions[i];
+        event.mods = mods[i];
+        event.x = xs[i];
+        event.y = ys[i];
+        event.time = times[i];
+
+        // Slot can be written again once read
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * @return number of events waiting
+     */
+    public int size()
+    {
+        return (int) (head.get() - tail.get());
+    }
+
+    public boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    public int getCapacity()
+    {
+        return capacity;
+    }
+
+    /**
+     * @return number of events dropped because the buffer was full
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * @return largest number of events waiting at once
+     */
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+}
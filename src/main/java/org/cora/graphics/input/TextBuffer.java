@@ -0,0 +1,408 @@
+package org.cora.graphics.input;
+
+/**
+ * Editable text stored in a gap buffer
+ * Characters are kept in one array with a gap at the last edited position, so
+ * typing or deleting next to the previous edit only moves the gap instead of
+ * copying the whole text. The selection goes from the anchor to the caret,
+ * both are equal when nothing is selected.
+ */
+public class TextBuffer implements CharSequence
+{
+    public final static int DEFAULT_CAPACITY = 64;
+
+    private char buffer[];
+    private int gapStart;
+    private int gapEnd;
+
+    private int caret;
+    private int anchor;
+
+    // Text as string, kept until next change
+    private String string;
+
+    private TextBufferListener listener;
+
+    public TextBuffer()
+    {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of characters stored before growing
+     */
+    public TextBuffer(int capacity)
+    {
+        buffer = new char[Math.max(1, capacity)];
+        gapStart = 0;
+        gapEnd = buffer.length;
+        caret = 0;
+        anchor = 0;
+        string = "";
+        listener = null;
+    }
+
+    @Override
+    public int length()
+    {
+        return buffer.length - (gapEnd - gapStart);
+    }
+
+    public boolean isEmpty()
+    {
+        return length() == 0;
+    }
+
+    @Override
+    public char charAt(int index)
+    {
+        if (index < 0 || index >= length())
+            throw new IndexOutOfBoundsException("Index " + index + ", length " + length());
+
+        return (index < gapStart) ? buffer[index] : buffer[index + gapEnd - gapStart];
+    }
+
+    /**
+     * Copy characters like String.getChars
+     *
+     * @param start  first character
+     * @param end    character after the last one
+     * @param dst    destination
+     * @param offset position in destination
+     */
+    public void getChars(int start, int end, char dst[], int offset)
+    {
+        checkRange(start, end);
+
+        if (start < gapStart)
+        {
+            int n = Math.min(end, gapStart) - start;
+            System.arraycopy(buffer, start, dst, offset, n);
+            offset += n;
+            start += n;
+        }
+        if (start < end)
+        {
+            System.arraycopy(buffer, start + gapEnd - gapStart, dst, offset, end - start);
+        }
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end)
+    {
+        checkRange(start, end);
+
+        char chars[] = new char[end - start];
+        getChars(start, end, chars, 0);
+        return new String(chars);
+    }
+
+    @Override
+    public String toString()
+    {
+        if (string == null)
+        {
+            char chars[] = new char[length()];
+            getChars(0, chars.length, chars, 0);
+            string = new String(chars);
+        }
+        return string;
+    }
+
+    // Edition
+    /**
+     * Replace selection by character
+     *
+     * @param c typed character
+     */
+    public void insert(char c)
+    {
+        int start = getSelectionStart();
+        int removed = getSelectionEnd() - start;
+
+        remove(start, removed);
+        ensureGap(1);
+        buffer[gapStart++] = c;
+
+        caret = anchor = start + 1;
+        changed(start, removed, 1);
+    }
+
+    /**
+     * Replace selection by text
+     *
+     * @param s inserted text
+     */
+    public void insert(CharSequence s)
+    {
+        replace(getSelectionStart(), getSelectionEnd(), s);
+    }
+
+    /**
+     * Replace characters, caret is placed after inserted text
+     *
+     * @param start first replaced character
+     * @param end   character after the last replaced one
+     * @param s     inserted text
+     */
+    public void replace(int start, int end, CharSequence s)
+    {
+        checkRange(start, end);
+
+        // Text is read before being changed when it is this buffer
+        if (s == this)
+            s = toString();
+
+        int length = s.length();
+        if (start == end && length == 0)
+            return;
+
+        remove(start, end - start);
+        ensureGap(length);
+        for (int i = 0; i < length; i++)
+        {
+            buffer[gapStart++] = s.charAt(i);
+        }
+
+        caret = anchor = start + length;
+        changed(start, end - start, length);
+    }
+
+    /**
+     * Remove selection, or n characters before caret
+     *
+     * @param n number of characters
+     */
+    public void deleteBackward(int n)
+    {
+        if (hasSelection())
+        {
+            deleteSelection();
+            return;
+        }
+
+        int start = Math.max(0, caret - n);
+        if (start < caret)
+            replace(start, caret, "");
+    }
+
+    /**
+     * Remove selection, or n characters after caret
+     *
+     * @param n number of characters
+     */
+    public void deleteForward(int n)
+    {
+        if (hasSelection())
+        {
+            deleteSelection();
+            return;
+        }
+
+        int end = Math.min(length(), caret + n);
+        if (caret < end)
+            replace(caret, end, "");
+    }
+
+    public void deleteSelection()
+    {
+        if (hasSelection())
+            replace(getSelectionStart(), getSelectionEnd(), "");
+    }
+
+    /**
+     * Replace all text, caret is placed at the end
+     *
+     * @param s new text
+     */
+    public void setText(CharSequence s)
+    {
+        replace(0, length(), s);
+    }
+
+    public void clear()
+    {
+        replace(0, length(), "");
+    }
+
+    // Caret and selection
+    public int getCaret()
+    {
+        return caret;
+    }
+
+    /**
+     * @param caret  new position, clamped in text
+     * @param select extend selection to the new position
+     */
+    public void setCaret(int caret, boolean select)
+    {
+        this.caret = Math.max(0, Math.min(length(), caret));
+        if (!select)
+            anchor = this.caret;
+    }
+
+    public void setCaret(int caret)
+    {
+        setCaret(caret, false);
+    }
+
+    /**
+     * @param delta  number of characters, negative to move left
+     * @param select extend selection to the new position
+     */
+    public void moveCaret(int delta, boolean select)
+    {
+        setCaret(caret + delta, select);
+    }
+
+    /**
+     * @param start anchor of the selection
+     * @param end   caret
+     */
+    public void select(int start, int end)
+    {
+        setCaret(start, false);
+        setCaret(end, true);
+    }
+
+    public void selectAll()
+    {
+        select(0, length());
+    }
+
+    public boolean hasSelection()
+    {
+        return anchor != caret;
+    }
+
+    public int getSelectionStart()
+    {
+        return Math.min(anchor, caret);
+    }
+
+    public int getSelectionEnd()
+    {
+        return Math.max(anchor, caret);
+    }
+
+    public String getSelectedText()
+    {
+        return subSequence(getSelectionStart(), getSelectionEnd()).toString();
+    }
+
+    // Lines
+    /**
+     * @param pos position in text
+     * @return position of the first character of the line containing pos
+     */
+    public int getLineStart(int pos)
+    {
+        pos = Math.max(0, Math.min(length(), pos));
+        while (pos > 0 && charAt(pos - 1) != '\n')
+            pos--;
+        return pos;
+    }
+
+    /**
+     * @param pos position in text
+     * @return position of the end of line containing pos, before its line break
+     */
+    public int getLineEnd(int pos)
+    {
+        int length = length();
+        pos = Math.max(0, Math.min(length, pos));
+        while (pos < length && charAt(pos) != '\n')
+            pos++;
+        return pos;
+    }
+
+    /**
+     * @param pos position in text
+     * @return index of the line containing pos
+     */
+    public int getLine(int pos)
+    {
+        pos = Math.max(0, Math.min(length(), pos));
+        int line = 0;
+        for (int i = 0; i < pos; i++)
+        {
+            if (charAt(i) == '\n')
+                line++;
+        }
+        return line;
+    }
+
+    /**
+     * @param listener receives text changes, null to remove
+     */
+    public void setListener(TextBufferListener listener)
+    {
+        this.listener = listener;
+    }
+
+    public TextBufferListener getListener()
+    {
+        return listener;
+    }
+
+    public int getCapacity()
+    {
+        return buffer.length;
+    }
+
+    /**
+     * Move gap to start and add removed characters to it
+     */
+    private void remove(int start, int removed)
+    {
+        moveGap(start);
+        gapEnd += removed;
+    }
+
+    private void moveGap(int pos)
+    {
+        if (pos < gapStart)
+        {
+            int n = gapStart - pos;
+            System.arraycopy(buffer, pos, buffer, gapEnd - n, n);
+            gapStart -= n;
+            gapEnd -= n;
+        }
+        else if (pos > gapStart)
+        {
+            int n = pos - gapStart;
+            System.arraycopy(buffer, gapEnd, buffer, gapStart, n);
+            gapStart += n;
+            gapEnd += n;
+        }
+    }
+
+    private void ensureGap(int n)
+    {
+        if (gapEnd - gapStart >= n)
+            return;
+
+        int length = length();
+        int after = buffer.length - gapEnd;
+        char newBuffer[] = new char[Math.max(buffer.length * 2, length + n)];
+
+        System.arraycopy(buffer, 0, newBuffer, 0, gapStart);
+        System.arraycopy(buffer, gapEnd, newBuffer, newBuffer.length - after, after);
+        gapEnd = newBuffer.length - after;
+        buffer = newBuffer;
+    }
+
+    private void changed(int start, int removed, int inserted)
+    {
+        string = null;
+        if (listener != null)
+            listener.onChange(this, start, removed, inserted);
+    }
+
+    private void checkRange(int start, int end)
+    {
+        if (start < 0 || end > length() || start > end)
+            throw new IndexOutOfBoundsException("Range " + start + " to " + end + ", length " + length());
+    }
+}
@@ -0,0 +1,18 @@
+package org.cora.graphics.input;
+
+/**
+ * Receives changes of a text buffer
+ */
+public interface TextBufferListener
+{
+    /**
+     * Characters from start to start + removed were replaced by inserted characters
+     * Line of the change can be found with getLineStart and getLineEnd
+     *
+     * @param text     changed text
+     * @param start    position of the change
+     * @param removed  number of removed characters
+     * @param inserted number of inserted characters
+     */
+    void onChange(TextBuffer text, int start, int removed, int inserted);
+}
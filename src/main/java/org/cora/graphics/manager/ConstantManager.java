@@ -6,4 +6,5 @@ public class ConstantManager
     public final static String objectsFolder = binFolder + "/" + "Objects";
     public final static String textureFolder = binFolder + "/" + "pics";
     public final static String fontFolder = binFolder + "/" + "fonts";
+    public final static String cacheFolder = binFolder + "/" + "cache";
 }
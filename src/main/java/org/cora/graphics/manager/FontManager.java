@@ -1,9 +1,17 @@
 package org.cora.graphics.manager;
 
+import java.awt.FontFormatException;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.cora.graphics.font.Font;
+import org.cora.graphics.font.GlyphAtlas;
+import org.cora.graphics.font.TrueTypeFont;
 import org.cora.graphics.graphics.Surface;
 
 /**
@@ -13,10 +21,16 @@ public class FontManager
 {
     private static FontManager INSTANCE = new FontManager();
     private Map<String, Font> fonts;
+    private GlyphAtlas glyphAtlas;
+    private int distanceSpread;
+    private volatile FontMetricsCache metricsCache;
     
     private FontManager()
     {
         fonts = new HashMap<String, Font>();
+        glyphAtlas = null;
+        distanceSpread = 0;
+        metricsCache = null;
     }
     
     public static FontManager getInstance()
@@ -24,6 +38,34 @@ public class FontManager
         return INSTANCE;
     }
 
+    /**
+     * Keep letter bounds of fonts on disk, so they are not computed again
+     * at next launch
+     * @param folder location of cache files
+     */
+    public void enableMetricsCache(String folder)
+    {
+        metricsCache = new FontMetricsCache(folder);
+    }
+
+    public void enableMetricsCache()
+    {
+        enableMetricsCache(ConstantManager.cacheFolder);
+    }
+
+    public void disableMetricsCache()
+    {
+        metricsCache = null;
+    }
+
+    /**
+     * @return font metrics cache or null if disabled
+     */
+    public FontMetricsCache getMetricsCache()
+    {
+        return metricsCache;
+    }
+
     /**
      * Create font from surface
      * @param surface font texture
@@ -93,6 +135,7 @@ public class FontManager
         while (isPresent(tmpName))
         {
             tmpName = name + "-" + i;
+            i++;
         }
         return tmpName;
     }
@@ -109,6 +152,9 @@ public class FontManager
     
     public Font createFont(String file, int width, int height)
     {
+        if (distanceSpread > 0)
+            return createDistanceFieldFont(file, width, height);
+
         Surface surface = TextureManager.getInstance().loadTexture(file);
         
         if (surface == null)
@@ -118,6 +164,131 @@ public class FontManager
         return font;
     }
 
+    /**
+     * Create font whose surface is replaced by its distance field before
+     * being loaded in video memory
+     * @param file font surface name
+     * @param width element length
+     * @param height element length
+     * @return created Font
+     */
+    private Font createDistanceFieldFont(String file, int width, int height)
+    {
+        Surface surface = TextureManager.createTexture(file, true);
+        if (surface == null)
+            return null;
+
+        Font font = new Font(surface, width, height);
+        Surface field = font.toDistanceField(distanceSpread);
+        if (field != null)
+        {
+            // Distance field can't be reloaded from the file
+            field.sourceFile = null;
+            surface = field;
+        }
+
+        TextureManager manager = TextureManager.getInstance();
+        if (manager.getDefaultGraphics() != null)
+            manager.loadTextureGL(surface);
+        manager.addTexture(surface);
+        return font;
+    }
+
+    /**
+     * Convert next fonts loaded from files to distance fields, rendered
+     * sharp at any scale with one texture per font
+     * @param spread largest stored distance in pixels, 0 to keep font surfaces
+     */
+    public void setDistanceField(int spread)
+    {
+        distanceSpread = spread;
+    }
+
+    public int getDistanceField()
+    {
+        return distanceSpread;
+    }
+
+    /**
+     * Create font rasterized from a true type file
+     * @param file true type font location
+     * @param size font size in pixels
+     * @param isInternal in jar
+     * @return created Font, null if the file can't be read
+     */
+    public TrueTypeFont loadTrueTypeFont(String file, float size, boolean isInternal)
+    {
+        java.awt.Font awtFont;
+        try
+        {
+            InputStream stream;
+            if (isInternal)
+            {
+                URL url = FileManager.getInternalURL(file);
+                if (url == null)
+                    throw new FileNotFoundException(file);
+                stream = url.openStream();
+            }
+            else
+            {
+                stream = new FileInputStream(file);
+            }
+
+            try
+            {
+                awtFont = java.awt.Font.createFont(java.awt.Font.TRUETYPE_FONT, stream);
+            }
+            finally
+            {
+                stream.close();
+            }
+        }
+        catch (IOException | FontFormatException e)
+        {
+            System.out.println("Can't load font " + file + ": " + e.getMessage());
+            return null;
+        }
+
+        TrueTypeFont font = createTrueTypeFont(awtFont.deriveFont(size));
+        addFont(font);
+        return font;
+    }
+
+    public TrueTypeFont loadTrueTypeFont(String file, float size)
+    {
+        return loadTrueTypeFont(file, size, true);
+    }
+
+    /**
+     * Create font rasterized from a java font, glyphs are kept in the shared glyph atlas
+     * @param awtFont font with its size
+     * @return created Font
+     */
+    public TrueTypeFont createTrueTypeFont(java.awt.Font awtFont)
+    {
+        return new TrueTypeFont(awtFont, getGlyphAtlas());
+    }
+
+    /**
+     * @return atlas shared by true type fonts, created with default size the first time
+     */
+    public GlyphAtlas getGlyphAtlas()
+    {
+        if (glyphAtlas == null)
+            glyphAtlas = new GlyphAtlas();
+        return glyphAtlas;
+    }
+
+    /**
+     * Change atlas of next true type fonts
+     * @param pageSize width and height of pages
+     * @param maxPages number of pages created before replacing glyphs
+     */
+    public void setGlyphAtlas(int pageSize, int maxPages)
+    {
+        glyphAtlas = new GlyphAtlas(pageSize, maxPages);
+    }
+
     /**
      * Remove font but not texture
      * @param name font name
@@ -0,0 +1,207 @@
+package org.cora.graphics.manager;
+
+import org.cora.graphics.font.FontData;
+import org.cora.graphics.graphics.Surface;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * Keep computed letter bounds of font surfaces on disk to skip scanning pixels
+ * A cache file is named after the checksum of the surface pixels and the cell
+ * size. It holds a header: magic, version, cell width, cell height, number of
+ * letters, pixels checksum and pixels size; followed for each letter by its
+ * left position in its cell and its width as shorts, and its empty flag.
+ */
+public class FontMetricsCache
+{
+    public final static int MAGIC       = 0x43464E54; // CFNT
+    public final static int VERSION     = 1;
+    public final static int HEADER_SIZE = 7 * 4;
+    public final static int DATA_SIZE   = 2 + 2 + 1;
+    public final static String EXTENSION = ".bounds";
+
+    private String folder;
+
+    private final AtomicInteger hits;
+    private final AtomicInteger misses;
+
+    /**
+     * @param folder location of cache files
+     */
+    public FontMetricsCache(String folder)
+    {
+        this.folder = folder;
+        hits = new AtomicInteger();
+        misses = new AtomicInteger();
+        new File(folder).mkdirs();
+    }
+
+    /**
+     * Read letter bounds from cache, letters are only changed if the cache is valid
+     *
+     * @param surface font surface
+     * @param width   width of one letter cell
+     * @param height  height of one letter cell
+     * @param data    bounds of each letter, in cell order
+     *
+     * @return true if bounds were read
+     */
+    public boolean read(Surface surface, int width, int height, FontData[] data)
+    {
+        int checksum = getChecksum(surface);
+        File cacheFile = getCacheFile(checksum, surface, width, height);
+        if (!cacheFile.isFile())
+        {
+            misses.incrementAndGet();
+            return false;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "r"))
+        {
+            FileChannel channel = raf.getChannel();
+            int size = HEADER_SIZE + data.length * DATA_SIZE;
+            if (channel.size() != size)
+            {
+                misses.incrementAndGet();
+                return false;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0);
+            buffer.flip();
+
+            if (buffer.remaining() < size || buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+                    || buffer.getInt() != width || buffer.getInt() != height
+                    || buffer.getInt() != data.length || buffer.getInt() != checksum
+                    || buffer.getInt() != surface.getByteSize())
+            {
+                misses.incrementAndGet();
+                return false;
+            }
+
+            int cols = surface.w / width;
+            for (int i = 0; i < data.length; i++)
+            {
+                data[i].left = (i % cols) * width + buffer.getShort();
+                data[i].width = buffer.getShort();
+                data[i].isEmpty = buffer.get() != 0;
+            }
+            hits.incrementAndGet();
+            return true;
+        }
+        catch (IOException e)
+        {
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * Write letter bounds in cache
+     *
+     * @param surface font surface
+     * @param width   width of one letter cell
+     * @param height  height of one letter cell
+     * @param data    bounds of each letter, in cell order
+     */
+    public void write(Surface surface, int width, int height, FontData[] data)
+    {
+        int checksum = getChecksum(surface);
+        File cacheFile = getCacheFile(checksum, surface, width, height);
+        File tmpFile = new File(cacheFile.getPath() + ".tmp");
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + data.length * DATA_SIZE)
+                .order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION);
+        buffer.putInt(width).putInt(height).putInt(data.length);
+        buffer.putInt(checksum).putInt(surface.getByteSize());
+
+        int cols = surface.w / width;
+        for (int i = 0; i < data.length; i++)
+        {
+            buffer.putShort((short) (data[i].left - (i % cols) * width));
+            buffer.putShort((short) data[i].width);
+            buffer.put((byte) (data[i].isEmpty ? 1 : 0));
+        }
+        buffer.flip();
+
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw"))
+        {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Can't write font metrics cache " + tmpFile.getPath());
+            tmpFile.delete();
+            return;
+        }
+
+        // Replace the previous cache file only once complete
+        cacheFile.delete();
+        if (!tmpFile.renameTo(cacheFile))
+        {
+            System.out.println("Can't write font metrics cache " + cacheFile.getPath());
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Remove all cache files
+     */
+    public void clear()
+    {
+        File[] files = new File(folder).listFiles();
+        if (files == null)
+            return;
+
+        for (File f : files)
+        {
+            if (f.isFile() && f.getName().endsWith(EXTENSION))
+                f.delete();
+        }
+    }
+
+    public String getFolder()
+    {
+        return folder;
+    }
+
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    public int getMisses()
+    {
+        return misses.get();
+    }
+
+    private File getCacheFile(int checksum, Surface surface, int width, int height)
+    {
+        return new File(folder, String.format("%08x-%d-%dx%d", checksum, surface.getByteSize(), width, height)
+                + EXTENSION);
+    }
+
+    /**
+     * @return CRC32 of all pixels
+     */
+    private static int getChecksum(Surface surface)
+    {
+        CRC32 crc = new CRC32();
+        ByteBuffer pixels = surface.pixels.duplicate();
+        pixels.clear();
+        pixels.limit(surface.getByteSize());
+        crc.update(pixels);
+        return (int) crc.getValue();
+    }
+}
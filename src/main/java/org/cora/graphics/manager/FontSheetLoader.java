@@ -0,0 +1,57 @@
+package org.cora.graphics.manager;
+
+import org.cora.graphics.font.Font;
+import org.cora.graphics.font.GlyphPageLoader;
+import org.cora.graphics.graphics.Surface;
+
+/**
+ * Load pages of glyphs from image files, one file per page of 256 characters
+ * File of a page is given by a pattern formatted with the page index,
+ * like "fonts/unifont_%02x.png" for fonts/unifont_04.png holding Cyrillic.
+ */
+public class FontSheetLoader implements GlyphPageLoader
+{
+    private String pattern;
+    private boolean isInternal;
+
+    /**
+     * @param pattern location of page files, formatted with the page index
+     */
+    public FontSheetLoader(String pattern)
+    {
+        this(pattern, true);
+    }
+
+    /**
+     * @param pattern location of page files, formatted with the page index
+     * @param isInternal in jar
+     */
+    public FontSheetLoader(String pattern, boolean isInternal)
+    {
+        this.pattern = pattern;
+        this.isInternal = isInternal;
+    }
+
+    @Override
+    public Surface loadPage(Font font, int page)
+    {
+        String file = String.format(pattern, page);
+        boolean isExisting = (isInternal) ? FileManager.getInternalURL(file) != null
+                : FileManager.isFileExisting(file);
+        if (!isExisting)
+            return null;
+
+        // Glyphs are read from pixels, the font keeps them when the page is created
+        return TextureManager.getInstance().loadTexture(file, isInternal);
+    }
+
+    public String getPattern()
+    {
+        return pattern;
+    }
+
+    public boolean isInternal()
+    {
+        return isInternal;
+    }
+}
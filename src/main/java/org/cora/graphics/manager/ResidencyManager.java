@@ -0,0 +1,261 @@
+package org.cora.graphics.manager;
+
+import org.cora.graphics.graphics.Surface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keep textures loaded from files under a video memory and an off-heap budget
+ * Least recently rendered textures are freed from video memory, then their pixels are
+ * released. They are loaded again, from the source image or the texture cache, when
+ * they are rendered. Released pixels are decoded by the background texture loader and
+ * uploaded at the end of a later frame. Textures rendered in the current frame are never
+ * evicted, the budget can be exceeded instead.
+ */
+public class ResidencyManager
+{
+    private final static Comparator<Surface> OLDEST_FIRST = new Comparator<Surface>()
+    {
+        @Override
+        public int compare(Surface a, Surface b)
+        {
+            return Long.compare(a.lastUsedFrame, b.lastUsedFrame);
+        }
+    };
+
+    private final TextureManager manager;
+    private final Set<Surface> surfaces;
+    private final ArrayList<Surface> candidates;
+    private final HashMap<Surface, TextureHandle> reloading;
+
+    private long vramBudget;
+    private long offHeapBudget;
+    private long frame;
+
+    private long residentBytes;
+    private long offHeapBytes;
+    private int evictions;
+    private int reloads;
+
+    /**
+     * @param manager texture manager used to load textures
+     * @param vramBudget bytes of textures kept in video memory
+     * @param offHeapBudget bytes of pixels kept in memory
+     */
+    public ResidencyManager(TextureManager manager, long vramBudget, long offHeapBudget)
+    {
+        this.manager = manager;
+        this.vramBudget = vramBudget;
+        this.offHeapBudget = offHeapBudget;
+        surfaces = new HashSet<Surface>();
+        candidates = new ArrayList<Surface>();
+        reloading = new HashMap<Surface, TextureHandle>();
+        frame = 0;
+    }
+
+    /**
+     * Manage surface, it must have a source file to be reloaded
+     *
+     * @param surface texture
+     */
+    public void register(Surface surface)
+    {
+        if (surface.sourceFile == null)
+            return;
+
+        surface.lastUsedFrame = frame;
+        surfaces.add(surface);
+    }
+
+    public void unregister(Surface surface)
+    {
+        surfaces.remove(surface);
+        cancelReload(surface);
+    }
+
+    /**
+     * Mark surface as rendered this frame and load it again if it was evicted
+     *
+     * @param surface rendered texture
+     */
+    public void use(Surface surface)
+    {
+        surface.lastUsedFrame = frame;
+
+        if (surface.texture > 0 || !surfaces.contains(surface))
+            return;
+
+        // Decoding is done in background, the texture is missing until it is uploaded
+        if (surface.pixels == null)
+        {
+            if (!reloading.containsKey(surface))
+                reloading.put(surface, manager.getLoader().reload(surface));
+            return;
+        }
+
+        if (manager.getDefaultGraphics() != null)
+            manager.loadTextureGL(surface);
+        reloads++;
+    }
+
+    /**
+     * Evict textures over budget, to be called once the frame is rendered
+     */
+    public void endFrame()
+    {
+        if (!reloading.isEmpty())
+            uploadReloaded();
+
+        residentBytes = 0;
+        offHeapBytes = 0;
+        for (Surface surface : surfaces)
+        {
+            if (surface.texture > 0)
+                residentBytes += surface.getByteSize();
+            if (surface.pixels != null)
+                offHeapBytes += surface.getByteSize();
+        }
+
+        if (residentBytes > vramBudget || offHeapBytes > offHeapBudget)
+        {
+            candidates.clear();
+            candidates.addAll(surfaces);
+            Collections.sort(candidates, OLDEST_FIRST);
+
+            for (int i = 0; i < candidates.size() && residentBytes > vramBudget; i++)
+            {
+                Surface surface = candidates.get(i);
+                if (surface.lastUsedFrame == frame)
+                    break;
+
+                if (surface.texture > 0)
+                {
+                    manager.freeTextureGL(surface);
+                    residentBytes -= surface.getByteSize();
+                    evictions++;
+                }
+            }
+
+            // Pixels are only needed to upload the texture again
+            for (int i = 0; i < candidates.size() && offHeapBytes > offHeapBudget; i++)
+            {
+                Surface surface = candidates.get(i);
+                if (surface.lastUsedFrame == frame)
+                    break;
+
+                if (surface.pixels != null && surface.texture <= 0 && !surface.keepPixels)
+                {
+                    surface.pixels = null;
+                    offHeapBytes -= surface.getByteSize();
+                }
+            }
+            candidates.clear();
+        }
+
+        frame++;
+    }
+
+    /**
+     * @param vramBudget bytes of textures kept in video memory
+     * @param offHeapBudget bytes of pixels kept in memory
+     */
+    public void setBudgets(long vramBudget, long offHeapBudget)
+    {
+        this.vramBudget = vramBudget;
+        this.offHeapBudget = offHeapBudget;
+    }
+
+    public void clear()
+    {
+        for (TextureHandle handle : reloading.values())
+        {
+            handle.getFuture().cancel(false);
+        }
+        reloading.clear();
+        surfaces.clear();
+    }
+
+    public long getFrame()
+    {
+        return frame;
+    }
+
+    /**
+     * @return bytes in video memory at the end of the last frame
+     */
+    public long getResidentBytes()
+    {
+        return residentBytes;
+    }
+
+    /**
+     * @return bytes of pixels in memory at the end of the last frame
+     */
+    public long getOffHeapBytes()
+    {
+        return offHeapBytes;
+    }
+
+    public int getEvictions()
+    {
+        return evictions;
+    }
+
+    public int getReloads()
+    {
+        return reloads;
+    }
+
+    public String getStats()
+    {
+        return surfaces.size() + " textures, " + (residentBytes >> 10) + " KB in video memory, "
+                + (offHeapBytes >> 10) + " KB of pixels, " + evictions + " evictions, "
+                + reloads + " reloads";
+    }
+
+    /**
+     * Copy pixels decoded in background to their surface and upload them
+     */
+    private void uploadReloaded()
+    {
+        Iterator<Map.Entry<Surface, TextureHandle>> it = reloading.entrySet().iterator();
+        while (it.hasNext())
+        {
+            Map.Entry<Surface, TextureHandle> entry = it.next();
+            TextureHandle handle = entry.getValue();
+            if (handle.getState() == TextureHandle.DECODING)
+                continue;
+
+            it.remove();
+            Surface loaded = handle.surface();
+            if (loaded == null)
+                continue;
+
+            Surface surface = entry.getKey();
+            surface.pixels = loaded.pixels;
+            surface.w = loaded.w;
+            surface.h = loaded.h;
+            surface.BytesPerPixel = loaded.BytesPerPixel;
+            surface.lastUsedFrame = frame;
+
+            if (manager.getDefaultGraphics() != null)
+                manager.loadTextureGL(surface);
+            handle.setLoaded();
+            reloads++;
+        }
+    }
+
+    private void cancelReload(Surface surface)
+    {
+        TextureHandle handle = reloading.remove(surface);
+        if (handle != null)
+            handle.getFuture().cancel(false);
+    }
+}
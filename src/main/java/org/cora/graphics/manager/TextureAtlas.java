@@ -0,0 +1,290 @@
+package org.cora.graphics.manager;
+
+import org.cora.graphics.base.Rect;
+import org.cora.graphics.base.SpriteData;
+import org.cora.graphics.graphics.Surface;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+/**
+ * Pack RGBA surfaces in a few large pages with skyline packing
+ * Each packed surface is surrounded by padding filled with its border pixels,
+ * so linear filtering doesn't bleed neighbouring images.
+ */
+public class TextureAtlas
+{
+    public final static int DEFAULT_PAGE_SIZE = 2048;
+    public final static int DEFAULT_PADDING   = 1;
+
+    /**
+     * Page with its skyline, segment i starts at x[i] with a height of y[i]
+     */
+    private static class Page
+    {
+        Surface surface;
+        int     x[];
+        int     y[];
+        int     count;
+        long    usedArea;
+        boolean isDirty;
+
+        Page(int width, int height)
+        {
+            surface = new Surface();
+            surface.w = width;
+            surface.h = height;
+            surface.BytesPerPixel = 4;
+            surface.texture = -1;
+            surface.pixels = BufferUtils.createByteBuffer(width * height * 4);
+
+            x = new int[16];
+            y = new int[16];
+            count = 1;
+            usedArea = 0;
+            isDirty = true;
+        }
+    }
+
+    private int pageSize;
+    private int padding;
+    private ArrayList<Page> pages;
+
+    // Result of the last search
+    private int bestX, bestY, bestIndex, bestEnd;
+
+    public TextureAtlas()
+    {
+        this(DEFAULT_PAGE_SIZE, DEFAULT_PADDING);
+    }
+
+    /**
+     * @param pageSize width and height of pages
+     * @param padding  pixels added around each packed surface
+     */
+    public TextureAtlas(int pageSize, int padding)
+    {
+        this.pageSize = pageSize;
+        this.padding = padding;
+        pages = new ArrayList<Page>();
+    }
+
+    /**
+     * Copy surface in a page
+     *
+     * @param surface RGBA surface
+     *
+     * @return page surface and part of the page holding the surface
+     */
+    public SpriteData add(Surface surface)
+    {
+        if (surface.BytesPerPixel != 4)
+        {
+            System.out.println("not supported bytes per pixel in atlas "
+                    + surface.BytesPerPixel);
+            return null;
+        }
+
+        int w = surface.w + padding * 2;
+        int h = surface.h + padding * 2;
+
+        Page page = null;
+        for (int i = 0; i < pages.size() && page == null; i++)
+        {
+            if (find(pages.get(i), w, h))
+                page = pages.get(i);
+        }
+
+        if (page == null)
+        {
+            // Images bigger than a page get their own page
+            page = new Page(Math.max(pageSize, w), Math.max(pageSize, h));
+            pages.add(page);
+            find(page, w, h);
+        }
+
+        place(page, w, h);
+        copy(surface, page.surface, bestX + padding, bestY + padding);
+        page.usedArea += (long) surface.w * surface.h;
+        page.isDirty = true;
+
+        Rect rect = new Rect(bestX + padding, bestY + padding, surface.w, surface.h);
+        return new SpriteData(page.surface, rect);
+    }
+
+    /**
+     * Find lowest position of a w * h rectangle
+     *
+     * @return true if the rectangle fits in the page
+     */
+    private boolean find(Page page, int w, int h)
+    {
+        int width = page.surface.w;
+        int height = page.surface.h;
+        bestY = Integer.MAX_VALUE;
+
+        for (int i = 0; i < page.count && page.x[i] + w <= width; i++)
+        {
+            // Highest segment under the rectangle
+            int top = 0;
+            int j = i;
+            while (j < page.count && page.x[j] < page.x[i] + w)
+            {
+                top = Math.max(top, page.y[j]);
+                j++;
+            }
+
+            if (top + h <= height && top < bestY)
+            {
+                bestY = top;
+                bestX = page.x[i];
+                bestIndex = i;
+                bestEnd = j;
+            }
+        }
+        return bestY != Integer.MAX_VALUE;
+    }
+
+    /**
+     * Replace segments covered by the rectangle found by the last search
+     */
+    private void place(Page page, int w, int h)
+    {
+        int right = bestX + w;
+
+        // Part of the last covered segment still visible on the right
+        int lastEnd = (bestEnd < page.count) ? page.x[bestEnd] : page.surface.w;
+        boolean keepRight = right < lastEnd;
+        int restY = page.y[bestEnd - 1];
+
+        int removed = bestEnd - bestIndex;
+        int added = (keepRight) ? 2 : 1;
+        int newCount = page.count - removed + added;
+        if (newCount > page.x.length)
+        {
+            int[] x = new int[newCount * 2];
+            int[] y = new int[newCount * 2];
+            System.arraycopy(page.x, 0, x, 0, page.count);
+            System.arraycopy(page.y, 0, y, 0, page.count);
+            page.x = x;
+            page.y = y;
+        }
+
+        System.arraycopy(page.x, bestEnd, page.x, bestIndex + added, page.count - bestEnd);
+        System.arraycopy(page.y, bestEnd, page.y, bestIndex + added, page.count - bestEnd);
+
+        page.x[bestIndex] = bestX;
+        page.y[bestIndex] = bestY + h;
+        if (keepRight)
+        {
+            page.x[bestIndex + 1] = right;
+            page.y[bestIndex + 1] = restY;
+        }
+        page.count = newCount;
+    }
+
+    /**
+     * Copy source in destination and extend source borders in padding
+     */
+    private void copy(Surface src, Surface dst, int x0, int y0)
+    {
+        ByteBuffer in = src.pixels;
+        ByteBuffer out = dst.pixels;
+        int rowSize = src.w * 4;
+
+        for (int y = -padding; y < src.h + padding; y++)
+        {
+            int srcRow = Math.min(Math.max(y, 0), src.h - 1) * rowSize;
+            int dst0 = ((y0 + y) * dst.w + x0) * 4;
+
+            for (int x = -padding; x < 0; x++)
+                copyPixel(in, srcRow, out, dst0 + x * 4);
+
+            for (int i = 0; i < rowSize; i++)
+                out.put(dst0 + i, in.get(srcRow + i));
+
+            for (int x = src.w; x < src.w + padding; x++)
+                copyPixel(in, srcRow + rowSize - 4, out, dst0 + x * 4);
+        }
+    }
+
+    private static void copyPixel(ByteBuffer in, int from, ByteBuffer out, int to)
+    {
+        out.put(to, in.get(from));
+        out.put(to + 1, in.get(from + 1));
+        out.put(to + 2, in.get(from + 2));
+        out.put(to + 3, in.get(from + 3));
+    }
+
+    /**
+     * @return pages holding packed surfaces
+     */
+    public ArrayList<Surface> getPages()
+    {
+        ArrayList<Surface> surfaces = new ArrayList<Surface>(pages.size());
+        for (Page page : pages)
+            surfaces.add(page.surface);
+        return surfaces;
+    }
+
+    /**
+     * @return pages modified since the last call
+     */
+    public ArrayList<Surface> getDirtyPages()
+    {
+        ArrayList<Surface> surfaces = new ArrayList<Surface>();
+        for (Page page : pages)
+        {
+            if (page.isDirty)
+            {
+                surfaces.add(page.surface);
+                page.isDirty = false;
+            }
+        }
+        return surfaces;
+    }
+
+    public int getPageCount()
+    {
+        return pages.size();
+    }
+
+    /**
+     * @return area of packed surfaces divided by area of pages
+     */
+    public float getFillRatio()
+    {
+        long used = 0;
+        long total = 0;
+        for (Page page : pages)
+        {
+            used += page.usedArea;
+            total += (long) page.surface.w * page.surface.h;
+        }
+        return (total == 0) ? 0 : (float) ((double) used / total);
+    }
+
+    public String getStats()
+    {
+        return pages.size() + " pages, " + (int) (getFillRatio() * 100) + "% filled";
+    }
+
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    public int getPadding()
+    {
+        return padding;
+    }
+
+    /**
+     * Forget all pages, their textures must be freed before
+     */
+    public void clear()
+    {
+        pages.clear();
+    }
+}
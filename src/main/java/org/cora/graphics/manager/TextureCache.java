@@ -0,0 +1,230 @@
+package org.cora.graphics.manager;
+
+import org.cora.graphics.graphics.Surface;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keep converted surfaces on disk to skip image decoding
+ * A cache file holds a header followed by the raw pixels:
+ * magic, version, width, height, bytes per pixel, source path hash,
+ * source size and source last modification time.
+ * The file is ignored and rewritten when the source size or time changes.
+ */
+public class TextureCache
+{
+    public final static int MAGIC       = 0x43524742; // CRGB
+    public final static int VERSION     = 1;
+    public final static int HEADER_SIZE = 5 * 4 + 4 + 8 + 8;
+    public final static String EXTENSION = ".rgba";
+
+    private String folder;
+
+    private final AtomicInteger hits;
+    private final AtomicInteger misses;
+
+    /**
+     * @param folder location of cache files
+     */
+    public TextureCache(String folder)
+    {
+        this.folder = folder;
+        hits = new AtomicInteger();
+        misses = new AtomicInteger();
+        new File(folder).mkdirs();
+    }
+
+    /**
+     * Read surface from cache, pixels are mapped from the cache file
+     *
+     * @param file image location
+     * @param isInternal in jar
+     *
+     * @return cached surface or null if missing or outdated
+     */
+    public Surface read(String file, boolean isInternal)
+    {
+        long[] source = getSourceInfo(file, isInternal);
+        File cacheFile = getCacheFile(file);
+        if (source == null || !cacheFile.isFile())
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(cacheFile, "r"))
+        {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0);
+            header.flip();
+
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION)
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            Surface surface = new Surface();
+            surface.w = header.getInt();
+            surface.h = header.getInt();
+            surface.BytesPerPixel = header.getInt();
+            int pathHash = header.getInt();
+            long size = header.getLong();
+            long time = header.getLong();
+
+            long pixelsSize = (long) surface.w * surface.h * surface.BytesPerPixel;
+            if (pathHash != file.hashCode() || size != source[0] || time != source[1]
+                    || channel.size() != HEADER_SIZE + pixelsSize)
+            {
+                misses.incrementAndGet();
+                return null;
+            }
+
+            // The mapping stays valid once the channel is closed
+            surface.pixels = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, pixelsSize);
+            surface.pixels.order(ByteOrder.nativeOrder());
+            hits.incrementAndGet();
+            return surface;
+        }
+        catch (IOException e)
+        {
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * Write surface in cache
+     *
+     * @param file image location
+     * @param isInternal in jar
+     * @param surface converted image
+     */
+    public void write(String file, boolean isInternal, Surface surface)
+    {
+        long[] source = getSourceInfo(file, isInternal);
+        if (source == null)
+            return;
+
+        File cacheFile = getCacheFile(file);
+        File tmpFile;
+        try
+        {
+            // Unique file, loader threads can write the same texture at the same time
+            tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+        }
+        catch (IOException e)
+        {
+            System.out.println("Can't write texture cache " + cacheFile.getPath());
+            return;
+        }
+
+        try (RandomAccessFile raf = new RandomAccessFile(tmpFile, "rw"))
+        {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION);
+            header.putInt(surface.w).putInt(surface.h).putInt(surface.BytesPerPixel);
+            header.putInt(file.hashCode()).putLong(source[0]).putLong(source[1]);
+            header.flip();
+
+            ByteBuffer pixels = surface.pixels.duplicate();
+            pixels.position(0);
+            while (header.hasRemaining())
+                channel.write(header);
+            while (pixels.hasRemaining())
+                channel.write(pixels);
+        }
+        catch (IOException e)
+        {
+            System.out.println("Can't write texture cache " + tmpFile.getPath());
+            tmpFile.delete();
+            return;
+        }
+
+        // Replace the previous cache file only once complete
+        cacheFile.delete();
+        if (!tmpFile.renameTo(cacheFile))
+        {
+            System.out.println("Can't write texture cache " + cacheFile.getPath());
+            tmpFile.delete();
+        }
+    }
+
+    /**
+     * Remove all cache files
+     */
+    public void clear()
+    {
+        File[] files = new File(folder).listFiles();
+        if (files == null)
+            return;
+
+        for (File f : files)
+        {
+            if (f.isFile() && f.getName().endsWith(EXTENSION))
+                f.delete();
+        }
+    }
+
+    public String getFolder()
+    {
+        return folder;
+    }
+
+    public int getHits()
+    {
+        return hits.get();
+    }
+
+    public int getMisses()
+    {
+        return misses.get();
+    }
+
+    private File getCacheFile(String file)
+    {
+        return new File(folder, file.replaceAll("[^A-Za-z0-9_.-]", "_") + EXTENSION);
+    }
+
+    /**
+     * @return size and last modification time of the source, null if not found
+     */
+    private static long[] getSourceInfo(String file, boolean isInternal)
+    {
+        if (!isInternal)
+        {
+            File f = new File(file);
+            if (!f.isFile())
+                return null;
+            return new long[]{f.length(), f.lastModified()};
+        }
+
+        URL url = FileManager.getInternalURL(file);
+        if (url == null)
+            return null;
+
+        try
+        {
+            URLConnection connection = url.openConnection();
+            long[] info = {connection.getContentLengthLong(), connection.getLastModified()};
+            connection.getInputStream().close();
+            return info;
+        }
+        catch (IOException e)
+        {
+            return null;
+        }
+    }
+}
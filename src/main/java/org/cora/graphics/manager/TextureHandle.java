@@ -0,0 +1,93 @@
+package org.cora.graphics.manager;
+
+import org.cora.graphics.graphics.Surface;
+
+import java.util.concurrent.Future;
+
+/**
+ * Texture loaded in background by TextureManager
+ * The surface is the placeholder until the texture is in video memory
+ */
+public class TextureHandle
+{
+    public final static int DECODING  = 0;
+    public final static int DECODED   = 1;
+    public final static int LOADED    = 2;
+    public final static int FAILED    = 3;
+
+    private final String file;
+    private final Surface placeholder;
+    private volatile int state;
+    private volatile Surface surface;
+    Future<Surface> future;
+
+    TextureHandle(String file, Surface placeholder)
+    {
+        this.file = file;
+        this.placeholder = placeholder;
+        state = DECODING;
+        surface = null;
+        future = null;
+    }
+
+    public String getFile()
+    {
+        return file;
+    }
+
+    /**
+     * @return DECODING, DECODED, LOADED or FAILED
+     */
+    public int getState()
+    {
+        return state;
+    }
+
+    /**
+     * @return true if the texture is in video memory
+     */
+    public boolean isLoaded()
+    {
+        return state == LOADED;
+    }
+
+    /**
+     * @return true if the texture is loaded or has failed
+     */
+    public boolean isDone()
+    {
+        return state == LOADED || state == FAILED;
+    }
+
+    /**
+     * @return loaded texture, or placeholder if not loaded yet
+     */
+    public Surface getSurface()
+    {
+        return (state == LOADED) ? surface : placeholder;
+    }
+
+    /**
+     * @return decoding task, its result is the decoded surface
+     */
+    public Future<Surface> getFuture()
+    {
+        return future;
+    }
+
+    Surface surface()
+    {
+        return surface;
+    }
+
+    void setDecoded(Surface surface)
+    {
+        this.surface = surface;
+        state = (surface == null) ? FAILED : DECODED;
+    }
+
+    void setLoaded()
+    {
+        state = LOADED;
+    }
+}
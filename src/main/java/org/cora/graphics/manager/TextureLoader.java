@@ -0,0 +1,265 @@
+package org.cora.graphics.manager;
+
+import org.cora.graphics.graphics.Surface;
+import org.lwjgl.BufferUtils;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decode textures on worker threads and upload them on the GL thread
+ * Uploads are limited per frame by a time and a byte budget
+ */
+public class TextureLoader
+{
+    public final static long DEFAULT_TIME_BUDGET = 4000000L; // 4 ms
+    public final static long DEFAULT_BYTE_BUDGET = 16L << 20;
+
+    private final TextureManager manager;
+    private final ExecutorService workers;
+    private final ConcurrentLinkedQueue<TextureHandle> decoded;
+    private final Surface placeholder;
+
+    private long timeBudget;
+    private long byteBudget;
+
+    private int requested;
+    private final AtomicInteger failed;
+    private int uploaded;
+
+    /**
+     * @param manager texture manager receiving loaded textures
+     * @param threads number of worker threads
+     */
+    public TextureLoader(TextureManager manager, int threads)
+    {
+        this.manager = manager;
+        decoded = new ConcurrentLinkedQueue<TextureHandle>();
+        failed = new AtomicInteger();
+        timeBudget = DEFAULT_TIME_BUDGET;
+        byteBudget = DEFAULT_BYTE_BUDGET;
+        placeholder = createPlaceholder();
+
+        workers = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private int count = 0;
+
+            @Override
+            public synchronized Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "TextureLoader-" + count++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Start decoding texture, must be called from the GL thread
+     *
+     * @param file image location
+     * @param isInternal in jar
+     *
+     * @return handle of the texture
+     */
+    public TextureHandle load(final String file, final boolean isInternal)
+    {
+        if (isFinished())
+        {
+            requested = 0;
+            uploaded = 0;
+            failed.set(0);
+        }
+
+        if (placeholder.texture <= 0 && manager.getDefaultGraphics() != null)
+            manager.loadTextureGL(placeholder);
+
+        final TextureHandle handle = new TextureHandle(file, placeholder);
+        requested++;
+
+        handle.future = workers.submit(new Callable<Surface>()
+        {
+            @Override
+            public Surface call()
+            {
+                Surface surface = decode(file, isInternal);
+
+                handle.setDecoded(surface);
+                if (surface == null)
+                {
+                    System.out.println("Can't load texture " + file);
+                    failed.incrementAndGet();
+                }
+                else
+                {
+                    decoded.add(handle);
+                }
+                return surface;
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Decode again pixels of an evicted texture, they are not uploaded by update
+     * The caller copies them in the surface once the handle is decoded
+     * Reloads are not counted in loading progress
+     *
+     * @param surface texture with a source file
+     *
+     * @return handle of the decoded pixels
+     */
+    TextureHandle reload(final Surface surface)
+    {
+        final TextureHandle handle = new TextureHandle(surface.sourceFile, surface);
+
+        handle.future = workers.submit(new Callable<Surface>()
+        {
+            @Override
+            public Surface call()
+            {
+                Surface loaded = decode(surface.sourceFile, surface.isInternal);
+
+                handle.setDecoded(loaded);
+                if (loaded == null)
+                    System.out.println("Can't reload texture " + surface.sourceFile);
+                return loaded;
+            }
+        });
+        return handle;
+    }
+
+    /**
+     * Upload decoded textures until the budget is reached, to be called once per frame
+     * on the GL thread. One texture is always uploaded if any is waiting
+     *
+     * @return number of uploaded textures
+     */
+    public int update()
+    {
+        long start = System.nanoTime();
+        long bytes = 0;
+        int count = 0;
+
+        TextureHandle handle;
+        while ((handle = decoded.poll()) != null)
+        {
+            Surface surface = handle.surface();
+            if (manager.getDefaultGraphics() != null)
+                manager.loadTextureGL(surface);
+            manager.addTexture(surface);
+            handle.setLoaded();
+
+            bytes += surface.pixels.capacity();
+            count++;
+            if (bytes >= byteBudget || System.nanoTime() - start >= timeBudget)
+                break;
+        }
+
+        uploaded += count;
+        return count;
+    }
+
+    /**
+     * Errors like OutOfMemoryError are caught too, so the texture is counted as failed
+     * instead of staying in decoding
+     *
+     * @return decoded surface, null if it can't be loaded
+     */
+    private static Surface decode(String file, boolean isInternal)
+    {
+        try
+        {
+            return TextureManager.createTexture(file, isInternal);
+        }
+        catch (Throwable e)
+        {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * @param nanos time spent uploading per frame
+     * @param bytes bytes uploaded per frame
+     */
+    public void setBudget(long nanos, long bytes)
+    {
+        timeBudget = nanos;
+        byteBudget = bytes;
+    }
+
+    /**
+     * @return ratio of requested textures loaded or failed since loading started
+     */
+    public float getProgress()
+    {
+        return (requested == 0) ? 1.0f : (float) (uploaded + failed.get()) / requested;
+    }
+
+    /**
+     * @return true if all requested textures are loaded or failed
+     */
+    public boolean isFinished()
+    {
+        return uploaded + failed.get() == requested;
+    }
+
+    public int getRequested()
+    {
+        return requested;
+    }
+
+    public int getUploaded()
+    {
+        return uploaded;
+    }
+
+    public int getFailed()
+    {
+        return failed.get();
+    }
+
+    /**
+     * @return surface given while textures are loading
+     */
+    public Surface getPlaceholder()
+    {
+        return placeholder;
+    }
+
+    /**
+     * Stop worker threads, waiting textures are not uploaded
+     */
+    public void shutdown()
+    {
+        workers.shutdownNow();
+        decoded.clear();
+    }
+
+    /**
+     * @return 2x2 grey checker
+     */
+    private static Surface createPlaceholder()
+    {
+        Surface surface = new Surface();
+        surface.textureName = "placeholder";
+        surface.w = 2;
+        surface.h = 2;
+        surface.BytesPerPixel = 4;
+        surface.texture = -1;
+        surface.pixels = BufferUtils.createByteBuffer(2 * 2 * 4);
+
+        for (int i = 0; i < 4; i++)
+        {
+            byte v = (byte) ((i == 0 || i == 3) ? 160 : 96);
+            surface.pixels.put(v).put(v).put(v).put((byte) 255);
+        }
+        surface.pixels.flip();
+        return surface;
+    }
+}
@@ -1,17 +1,31 @@
 package org.cora.graphics.manager;
 
 
+import org.cora.graphics.base.Rect;
+import org.cora.graphics.base.SpriteData;
 import org.cora.graphics.graphics.Graphics;
 import org.cora.graphics.graphics.Surface;
 import org.lwjgl.BufferUtils;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
-import java.net.URL;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Handle textures
@@ -20,12 +34,23 @@ public class TextureManager
 {
     private static TextureManager INSTANCE = new TextureManager();
     private Graphics g;
+    private Thread graphicsThread;
     private Map<String, Surface> textures;
+    private Map<String, SpriteData> sprites;
+    private TextureAtlas atlas;
+    private TextureLoader loader;
+    private volatile TextureCache cache;
+    private ResidencyManager residency;
 
     private TextureManager()
     {
         g = null;
         textures = new HashMap<String, Surface>();
+        sprites = new HashMap<String, SpriteData>();
+        atlas = null;
+        loader = null;
+        cache = null;
+        residency = null;
     }
 
     public static TextureManager getInstance()
@@ -41,6 +66,9 @@ public class TextureManager
     public void init(Graphics g)
     {
         this.g = g;
+        graphicsThread = Thread.currentThread();
+        if (residency != null)
+            g.setResidencyManager(residency);
     }
 
     public Graphics getDefaultGraphics()
@@ -51,6 +79,16 @@ public class TextureManager
     public void setDefaultGraphics(Graphics g)
     {
         this.g = g;
+        graphicsThread = Thread.currentThread();
+    }
+
+    /**
+     * @return current thread is the one which set the default graphics,
+     * the only one allowed to use its textures and batch
+     */
+    public boolean isGraphicsThread()
+    {
+        return g != null && Thread.currentThread() == graphicsThread;
     }
 
     /**
@@ -75,7 +113,7 @@ public class TextureManager
      */
     public Surface loadTexture(String file, boolean isInternal)
     {
-        Surface surface = createTexture(file);
+        Surface surface = createTexture(file, isInternal);
 
         if (g != null)
         {
@@ -100,6 +138,237 @@ public class TextureManager
         return loadTexture(file, true);
     }
 
+    /**
+     * Free least recently rendered textures once a budget is exceeded
+     * Freed textures are loaded again when rendered
+     *
+     * @param vramBudget bytes of textures kept in video memory
+     * @param offHeapBudget bytes of pixels kept in memory
+     */
+    public void enableResidency(long vramBudget, long offHeapBudget)
+    {
+        if (residency == null)
+        {
+            residency = new ResidencyManager(this, vramBudget, offHeapBudget);
+            for (Entry<String, Surface> texture : textures.entrySet())
+            {
+                residency.register(texture.getValue());
+            }
+        }
+        else
+        {
+            residency.setBudgets(vramBudget, offHeapBudget);
+        }
+
+        if (g != null)
+            g.setResidencyManager(residency);
+    }
+
+    public void disableResidency()
+    {
+        residency = null;
+        if (g != null)
+            g.setResidencyManager(null);
+    }
+
+    /**
+     * @return residency manager or null if disabled
+     */
+    public ResidencyManager getResidency()
+    {
+        return residency;
+    }
+
+    /**
+     * Keep converted textures in folder, next loads read them instead of decoding images
+     *
+     * @param folder location of cache files
+     */
+    public void enableCache(String folder)
+    {
+        cache = new TextureCache(folder);
+    }
+
+    public void enableCache()
+    {
+        enableCache(ConstantManager.cacheFolder);
+    }
+
+    public void disableCache()
+    {
+        cache = null;
+    }
+
+    /**
+     * @return texture cache or null if disabled
+     */
+    public TextureCache getCache()
+    {
+        return cache;
+    }
+
+    /**
+     * Decode texture in background, the texture is added once uploaded by updateLoading
+     * Textures loaded in background are not packed in atlas
+     *
+     * @param file image location
+     * @param isInternal in jar
+     *
+     * @return handle giving the placeholder until the texture is loaded
+     */
+    public TextureHandle loadTextureAsync(String file, boolean isInternal)
+    {
+        return getLoader().load(file, isInternal);
+    }
+
+    public TextureHandle loadTextureAsync(String file)
+    {
+        return loadTextureAsync(file, true);
+    }
+
+    /**
+     * Decode all textures of folder in background
+     *
+     * @param folder textures location
+     *
+     * @return handles of textures
+     */
+    public ArrayList<TextureHandle> loadAllTexturesAsync(String folder)
+    {
+        ArrayList<String> files = FileManager.getAllFilesPath(folder, false, true);
+        ArrayList<TextureHandle> handles = new ArrayList<TextureHandle>(files.size());
+        for (int i = 0; i < files.size(); i++)
+        {
+            handles.add(loadTextureAsync(files.get(i)));
+        }
+        return handles;
+    }
+
+    /**
+     * Upload textures decoded in background, to be called once per frame on the GL thread
+     *
+     * @return number of uploaded textures
+     */
+    public int updateLoading()
+    {
+        return (loader == null) ? 0 : loader.update();
+    }
+
+    /**
+     * @return ratio of textures loaded in background, 1 if nothing is loading
+     */
+    public float getLoadingProgress()
+    {
+        return (loader == null) ? 1.0f : loader.getProgress();
+    }
+
+    public boolean isLoading()
+    {
+        return loader != null && !loader.isFinished();
+    }
+
+    /**
+     * Create background loader if needed
+     *
+     * @return background loader
+     */
+    public TextureLoader getLoader()
+    {
+        if (loader == null)
+            loader = new TextureLoader(this, Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        return loader;
+    }
+
+    /**
+     * Pack textures loaded with loadAllTextures and loadTextureToAtlas in shared pages
+     *
+     * @param pageSize width and height of pages
+     * @param padding pixels added around each texture
+     */
+    public void enableAtlas(int pageSize, int padding)
+    {
+        if (atlas == null)
+            atlas = new TextureAtlas(pageSize, padding);
+    }
+
+    public void enableAtlas()
+    {
+        enableAtlas(TextureAtlas.DEFAULT_PAGE_SIZE, TextureAtlas.DEFAULT_PADDING);
+    }
+
+    /**
+     * Load next textures in their own texture, already packed textures are kept
+     */
+    public void disableAtlas()
+    {
+        atlas = null;
+    }
+
+    public boolean isAtlasEnabled()
+    {
+        return atlas != null;
+    }
+
+    public TextureAtlas getAtlas()
+    {
+        return atlas;
+    }
+
+    /**
+     * @return page count and fill ratio of atlas
+     */
+    public String getAtlasStats()
+    {
+        return (atlas == null) ? "atlas disabled" : atlas.getStats();
+    }
+
+    /**
+     * Load texture from file and pack it in atlas
+     * Pages are not uploaded, uploadAtlas must be called after
+     *
+     * @param file image location
+     * @param isInternal in jar
+     * @return page surface and part of page holding the texture
+     */
+    public SpriteData loadTextureToAtlas(String file, boolean isInternal)
+    {
+        if (atlas == null)
+        {
+            Surface surface = loadTexture(file, isInternal);
+            return (surface == null) ? null : createSpriteData(surface);
+        }
+
+        Surface surface = createTexture(file, isInternal);
+        if (surface == null)
+            return null;
+
+        SpriteData sd = atlas.add(surface);
+        if (sd != null)
+            sprites.put(createName(surface.textureName), sd);
+        return sd;
+    }
+
+    public SpriteData loadTextureToAtlas(String file)
+    {
+        return loadTextureToAtlas(file, true);
+    }
+
+    /**
+     * Load modified atlas pages in video memory
+     */
+    public void uploadAtlas()
+    {
+        if (atlas == null || g == null)
+            return;
+
+        for (Surface page : atlas.getDirtyPages())
+        {
+            if (page.texture > 0)
+                freeTextureGL(page);
+            loadTextureGL(page);
+        }
+    }
+
     /**
      * Add texture to TextureManager's map
      *
@@ -109,6 +378,9 @@ public class TextureManager
     {
         surface.textureName = createName(surface.textureName);
         textures.put(surface.textureName, surface);
+
+        if (residency != null)
+            residency.register(surface);
     }
 
     /**
@@ -125,18 +397,56 @@ public class TextureManager
         while (isPresent(tmpName))
         {
             tmpName = name + "-" + i;
+            i++;
         }
         return tmpName;
     }
 
     public boolean isPresent(String name)
     {
-        return textures.containsKey(name);
+        return textures.containsKey(name) || sprites.containsKey(name);
     }
 
+    /**
+     * Get texture, for a texture packed in atlas it's the whole page
+     * Use getSpriteData to get the part of the page
+     *
+     * @param name texture name
+     *
+     * @return texture or atlas page
+     */
     public Surface getTexture(String name)
     {
-        return textures.get(name);
+        Surface surface = textures.get(name);
+        if (surface == null)
+        {
+            SpriteData sd = sprites.get(name);
+            if (sd != null)
+                return sd.surface;
+        }
+        return surface;
+    }
+
+    /**
+     * Get texture and the part used by the texture
+     *
+     * @param name texture name
+     *
+     * @return new sprite data
+     */
+    public SpriteData getSpriteData(String name)
+    {
+        SpriteData sd = sprites.get(name);
+        if (sd != null)
+            return new SpriteData(sd.surface, (Rect) sd.rect.clone());
+
+        Surface surface = textures.get(name);
+        return (surface == null) ? null : createSpriteData(surface);
+    }
+
+    private static SpriteData createSpriteData(Surface surface)
+    {
+        return new SpriteData(surface, new Rect(0, 0, surface.w, surface.h));
     }
 
     public static Surface createTextureFromDef(String file)
@@ -151,32 +461,46 @@ public class TextureManager
      *
      * @return texture
      */
-    private static Surface createTexture(String file, boolean isInternal)
+    static Surface createTexture(String file, boolean isInternal)
     {
-        if (isInternal)
+        TextureCache cache = INSTANCE.cache;
+        if (cache != null)
         {
-            URL url = FileManager.getInternalURL(file);
-            BufferedImage image = FileManager.loadBufferedImage(file, true);
-
-            if (image == null)
-                return null;
-
-            Surface surface = transformToImage(image);
-            surface.textureName = url.getFile();
-            return surface;
+            Surface surface = cache.read(file, isInternal);
+            if (surface != null)
+            {
+                surface.textureName = getTextureName(file, isInternal);
+                surface.sourceFile = file;
+                surface.isInternal = isInternal;
+                return surface;
+            }
         }
+
+        BufferedImage image;
+        if (isInternal)
+            image = FileManager.loadBufferedImage(file, true);
         else
-        {
-            File f = new File(file);
-            BufferedImage image = FileManager.loadBufferedImage(f);
+            image = FileManager.loadBufferedImage(new File(file));
 
-            if (image == null)
-                return null;
+        if (image == null)
+            return null;
 
-            Surface surface = transformToImage(image);
-            surface.textureName = f.getName();
-            return surface;
-        }
+        Surface surface = transformToImage(image);
+        surface.textureName = getTextureName(file, isInternal);
+        surface.sourceFile = file;
+        surface.isInternal = isInternal;
+
+        if (cache != null)
+            cache.write(file, isInternal, surface);
+        return surface;
+    }
+
+    private static String getTextureName(String file, boolean isInternal)
+    {
+        if (isInternal)
+            return FileManager.getInternalURL(file).getFile();
+        else
+            return new File(file).getName();
     }
 
     private static Surface createTexture(String file)
@@ -185,35 +509,162 @@ public class TextureManager
     }
     
 
+    /**
+     * Images with more pixels are converted in parallel row bands
+     */
+    public final static int PARALLEL_THRESHOLD = 512 * 512;
+    private final static int BAND_HEIGHT = 64;
+
+    /**
+     * Convert image in RGBA surface
+     *
+     * @param image source
+     *
+     * @return surface with 4 bytes per pixel
+     */
     public static Surface transformToImage(BufferedImage image)
     {
         Surface surface = new Surface();
         surface.w = image.getWidth();
         surface.h = image.getHeight();
-        surface.BytesPerPixel = 4;// image.getType();
+        surface.BytesPerPixel = 4;
+
+        surface.pixels = BufferUtils.createByteBuffer(surface.w * surface.h
+                * surface.BytesPerPixel);
+
+        // Each int is written as R, G, B, A
+        IntBuffer out = surface.pixels.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
 
+        if (surface.w * surface.h >= PARALLEL_THRESHOLD)
+        {
+            ForkJoinPool.commonPool().invoke(new ConvertTask(image, out, 0, surface.h));
+        }
+        else
+        {
+            convertRows(image, out, 0, surface.h, new int[surface.w]);
+        }
 
-        int[] pixels = new int[image.getWidth() * image.getHeight()];
-        image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0,
-                image.getWidth());
+        return surface;
+    }
 
-        surface.pixels = BufferUtils.createByteBuffer(image.getWidth()
-                * image.getHeight() * surface.BytesPerPixel);
+    /**
+     * Convert rows from y0 to y1 excluded in RGBA
+     *
+     * @param image source
+     * @param out destination, one int per pixel
+     * @param y0 first row
+     * @param y1 last row excluded
+     * @param row buffer of image width
+     */
+    private static void convertRows(BufferedImage image, IntBuffer out, int y0, int y1, int[] row)
+    {
+        int w = image.getWidth();
+        WritableRaster raster = image.getRaster();
+        DataBuffer dataBuffer = raster.getDataBuffer();
+        SampleModel model = raster.getSampleModel();
+
+        // Position of the first pixel of row y in the data buffer
+        int tx = raster.getSampleModelTranslateX();
+        int ty = raster.getSampleModelTranslateY();
+        int offset = dataBuffer.getOffset();
+
+        out = out.duplicate();
+        out.position(y0 * w);
+
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_RGB)
+                && dataBuffer instanceof DataBufferInt
+                && model instanceof SinglePixelPackedSampleModel)
+        {
+            int[] data = ((DataBufferInt) dataBuffer).getData();
+            int stride = ((SinglePixelPackedSampleModel) model).getScanlineStride();
+            int alpha = (type == BufferedImage.TYPE_INT_RGB) ? 0xFF : 0;
 
-        for (int y = 0; y < image.getHeight(); y++)
+            for (int y = y0; y < y1; y++)
+            {
+                int start = offset + (y - ty) * stride - tx;
+                for (int x = 0; x < w; x++)
+                {
+                    int pixel = data[start + x];
+                    row[x] = (pixel << 8) | (pixel >>> 24) | alpha;
+                }
+                out.put(row, 0, w);
+            }
+        }
+        else if ((type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_3BYTE_BGR)
+                && dataBuffer instanceof DataBufferByte
+                && model instanceof ComponentSampleModel)
         {
-            for (int x = 0; x < image.getWidth(); x++)
+            ComponentSampleModel components = (ComponentSampleModel) model;
+            byte[] data = ((DataBufferByte) dataBuffer).getData();
+            int stride = components.getScanlineStride();
+            int pixelStride = components.getPixelStride();
+            int[] bands = components.getBandOffsets();
+            int r = bands[0], g = bands[1], b = bands[2];
+            boolean hasAlpha = bands.length > 3;
+            int a = (hasAlpha) ? bands[3] : 0;
+
+            for (int y = y0; y < y1; y++)
             {
-                int pixel = pixels[y * image.getWidth() + x];
-                surface.pixels.put((byte) ((pixel >> 16) & 0xFF)); // red
-                surface.pixels.put((byte) ((pixel >> 8) & 0xFF)); // green
-                surface.pixels.put((byte) (pixel & 0xFF)); // blue
-                surface.pixels.put((byte) ((pixel >> 24) & 0xFF)); // alpha
+                int pos = offset + (y - ty) * stride - tx * pixelStride;
+                for (int x = 0; x < w; x++)
+                {
+                    row[x] = ((data[pos + r] & 0xFF) << 24)
+                            | ((data[pos + g] & 0xFF) << 16)
+                            | ((data[pos + b] & 0xFF) << 8)
+                            | ((hasAlpha) ? (data[pos + a] & 0xFF) : 0xFF);
+                    pos += pixelStride;
+                }
+                out.put(row, 0, w);
             }
         }
+        else
+        {
+            // Other formats are converted by java in ARGB, one row at a time
+            for (int y = y0; y < y1; y++)
+            {
+                image.getRGB(0, y, w, 1, row, 0, w);
+                for (int x = 0; x < w; x++)
+                {
+                    int pixel = row[x];
+                    row[x] = (pixel << 8) | (pixel >>> 24);
+                }
+                out.put(row, 0, w);
+            }
+        }
+    }
 
-        surface.pixels.flip();
-        return surface;
+    /**
+     * Split rows in bands converted in parallel
+     */
+    private static class ConvertTask extends RecursiveAction
+    {
+        private final BufferedImage image;
+        private final IntBuffer out;
+        private final int y0;
+        private final int y1;
+
+        ConvertTask(BufferedImage image, IntBuffer out, int y0, int y1)
+        {
+            this.image = image;
+            this.out = out;
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (y1 - y0 <= BAND_HEIGHT)
+            {
+                convertRows(image, out, y0, y1, new int[image.getWidth()]);
+                return;
+            }
+
+            int middle = (y0 + y1) >>> 1;
+            invokeAll(new ConvertTask(image, out, y0, middle),
+                    new ConvertTask(image, out, middle, y1));
+        }
     }
 
     public void loadAllTexturesFromDef()
@@ -224,10 +675,41 @@ public class TextureManager
     public void loadAllTextures(String folder)
     {
         ArrayList<String> files = FileManager.getAllFilesPath(folder, false, true);
+        if (atlas == null)
+        {
+            for (int i = 0; i < files.size(); i++)
+            {
+                loadTexture(files.get(i));
+            }
+            return;
+        }
+
+        ArrayList<Surface> surfaces = new ArrayList<Surface>(files.size());
         for (int i = 0; i < files.size(); i++)
         {
-            loadTexture(files.get(i));
+            Surface surface = createTexture(files.get(i));
+            if (surface != null)
+                surfaces.add(surface);
+        }
+
+        // Highest textures first fill pages better
+        Collections.sort(surfaces, new Comparator<Surface>()
+        {
+            @Override
+            public int compare(Surface a, Surface b)
+            {
+                return b.h - a.h;
+            }
+        });
+
+        for (Surface surface : surfaces)
+        {
+            SpriteData sd = atlas.add(surface);
+            if (sd != null)
+                sprites.put(createName(surface.textureName), sd);
         }
+
+        uploadAtlas();
     }
 
     /**
@@ -237,6 +719,10 @@ public class TextureManager
      */
     public void freeTexture(String name)
     {
+        // Space in atlas pages is not reused
+        if (sprites.remove(name) != null)
+            return;
+
         Surface surface = removeFromMap(name);
         if (surface != null)
         {
@@ -253,7 +739,10 @@ public class TextureManager
      */
     public Surface removeFromMap(String name)
     {
-        return textures.remove(name);
+        Surface surface = textures.remove(name);
+        if (surface != null && residency != null)
+            residency.unregister(surface);
+        return surface;
     }
 
 
@@ -267,6 +756,20 @@ public class TextureManager
         g.loadTextureGL(surface);
     }
 
+    /**
+     * Copy part of surface pixels in its loaded texture
+     *
+     * @param surface texture
+     * @param x coordinate of the part
+     * @param y coordinate of the part
+     * @param width length of the part
+     * @param height length of the part
+     */
+    public void updateTextureGL(Surface surface, int x, int y, int width, int height)
+    {
+        g.updateTextureGL(surface, x, y, width, height);
+    }
+
     /**
      * Free texture from video memory
      *
@@ -274,7 +777,8 @@ public class TextureManager
      */
     public void freeTextureGL(Surface surface)
     {
-        g.freeTexture(surface.texture);
+        if (surface.texture > 0)
+            g.freeTexture(surface.texture);
         surface.texture = -1;
     }
 
@@ -288,5 +792,20 @@ public class TextureManager
             freeTextureGL(texture.getValue());
         }
         textures.clear();
+
+        if (residency != null)
+            residency.clear();
+
+        // Pages are shared by sprites
+        for (Entry<String, SpriteData> sprite : sprites.entrySet())
+        {
+            Surface page = sprite.getValue().surface;
+            if (page.texture > 0)
+                freeTextureGL(page);
+        }
+        sprites.clear();
+
+        if (atlas != null)
+            atlas.clear();
     }
 }
@@ -0,0 +1,48 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.graphics.Surface;
+import org.cora.graphics.manager.ConstantManager;
+import org.cora.graphics.manager.FileManager;
+import org.cora.graphics.manager.TextureManager;
+
+import java.util.ArrayList;
+
+/**
+ * Measure loading time of a texture folder without cache, with an empty cache
+ * and with a filled cache
+ */
+public class CacheBenchmark
+{
+    public static void main(String[] args)
+    {
+        String folder = (args.length > 0) ? args[0] : ConstantManager.textureFolder;
+        ArrayList<String> files = FileManager.getAllFilesPath(folder, false, true);
+        TextureManager textureManager = TextureManager.getInstance();
+
+        textureManager.disableCache();
+        long decode = load(textureManager, files);
+
+        textureManager.enableCache();
+        textureManager.getCache().clear();
+        long cold = load(textureManager, files);
+        long warm = load(textureManager, files);
+
+        System.out.println(files.size() + " files in " + folder);
+        System.out.println("no cache " + (decode / 1000000) + " ms, cold cache " + (cold / 1000000)
+                + " ms, warm cache " + (warm / 1000000) + " ms");
+        System.out.println("cache hits " + textureManager.getCache().getHits()
+                + ", misses " + textureManager.getCache().getMisses());
+    }
+
+    private static long load(TextureManager textureManager, ArrayList<String> files)
+    {
+        long start = System.nanoTime();
+        for (String file : files)
+        {
+            Surface surface = textureManager.loadTexture(file, false);
+            if (surface != null)
+                textureManager.removeFromMap(surface.textureName);
+        }
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,127 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.font.Font;
+import org.cora.graphics.font.GlyphBlender;
+import org.cora.graphics.graphics.Surface;
+import org.cora.graphics.graphics.myColor;
+import org.lwjgl.BufferUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/**
+ * Compare rendering time of glyphs with Font.printOptimized on bytes and with
+ * GlyphBlender, and check both give the same pixels
+ */
+public class GlyphBlitBenchmark
+{
+    private final static int GLYPH_SIZE = 16;
+    private final static int OUTPUT_WIDTH = 1024;
+    private final static int OUTPUT_HEIGHT = 512;
+
+    public static void main(String[] args)
+    {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 5;
+
+        Font font = new Font(createFont(), GLYPH_SIZE, GLYPH_SIZE);
+
+        myColor fontColors[] = {myColor.WHITE(), new myColor(1.0f, 0.5f, 0.2f, 0.8f), myColor.WHITE()};
+        myColor backColors[] = {myColor.BLACK(0), myColor.BLACK(0), new myColor(0.1f, 0.2f, 0.7f, 0.6f)};
+        String names[] = {"white text", "colored text", "colored back"};
+
+        for (int k = 0; k < fontColors.length; k++)
+        {
+            ByteBuffer expected = BufferUtils.createByteBuffer(OUTPUT_WIDTH * OUTPUT_HEIGHT * 4);
+            ByteBuffer result = BufferUtils.createByteBuffer(OUTPUT_WIDTH * OUTPUT_HEIGHT * 4);
+
+            // Warm up
+            printOld(font, expected, fontColors[k], backColors[k]);
+            printNew(font, result, fontColors[k], backColors[k]);
+
+            long old = Long.MAX_VALUE;
+            long current = Long.MAX_VALUE;
+            for (int i = 0; i < runs; i++)
+            {
+                long start = System.nanoTime();
+                printOld(font, expected, fontColors[k], backColors[k]);
+                old = Math.min(old, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                printNew(font, result, fontColors[k], backColors[k]);
+                current = Math.min(current, System.nanoTime() - start);
+            }
+
+            int different = 0;
+            for (int i = 0; i < expected.capacity(); i++)
+            {
+                if (expected.get(i) != result.get(i))
+                    different++;
+            }
+
+            System.out.println(names[k] + ": old " + (old / 1000) + " us, new " + (current / 1000) + " us, "
+                    + ((different == 0) ? "same pixels" : different + " DIFFERENT bytes"));
+        }
+    }
+
+    /**
+     * Fill output with all glyphs using the byte per byte rendering
+     */
+    private static void printOld(Font font, ByteBuffer pixels, myColor fontColor, myColor backColor)
+    {
+        int c = 0;
+        for (int y = 0; y + GLYPH_SIZE <= OUTPUT_HEIGHT; y += GLYPH_SIZE)
+        {
+            for (int x = 0; x + GLYPH_SIZE <= OUTPUT_WIDTH; x += GLYPH_SIZE)
+            {
+                font.printOptimized(pixels, (char) (c++ % Font.NCHAR), x, y, OUTPUT_WIDTH, 4,
+                        fontColor, backColor);
+            }
+        }
+    }
+
+    private static void printNew(Font font, ByteBuffer pixels, myColor fontColor, myColor backColor)
+    {
+        GlyphBlender blender = new GlyphBlender(pixels, OUTPUT_WIDTH, fontColor, backColor);
+        int c = 0;
+        for (int y = 0; y + GLYPH_SIZE <= OUTPUT_HEIGHT; y += GLYPH_SIZE)
+        {
+            for (int x = 0; x + GLYPH_SIZE <= OUTPUT_WIDTH; x += GLYPH_SIZE)
+            {
+                font.printOptimized(blender, (char) (c++ % Font.NCHAR), x, y);
+            }
+        }
+    }
+
+    /**
+     * Create font surface with antialiased borders
+     */
+    private static Surface createFont()
+    {
+        int size = GLYPH_SIZE * 16;
+        Surface surface = new Surface();
+        surface.w = size;
+        surface.h = size;
+        surface.BytesPerPixel = 4;
+        surface.pixels = BufferUtils.createByteBuffer(size * size * 4);
+
+        Random random = new Random(42);
+        for (int c = 33; c < Font.NCHAR; c++)
+        {
+            int x0 = (c % 16) * GLYPH_SIZE;
+            int y0 = (c / 16) * GLYPH_SIZE;
+            int w = 4 + random.nextInt(GLYPH_SIZE - 4);
+            for (int y = 0; y < GLYPH_SIZE; y++)
+            {
+                for (int x = 0; x < w; x++)
+                {
+                    int alpha = random.nextInt(4);
+                    alpha = (alpha == 0) ? 0 : (alpha == 1) ? 255 : random.nextInt(256);
+                    int o = ((y0 + y) * size + x0 + x) * 4;
+                    surface.pixels.put(o, (byte) 255).put(o + 1, (byte) 255)
+                            .put(o + 2, (byte) 255).put(o + 3, (byte) alpha);
+                }
+            }
+        }
+        return surface;
+    }
+}
@@ -0,0 +1,77 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.base.Image;
+import org.cora.graphics.graphics.Graphics;
+import org.cora.graphics.graphics.SoftwareBackend;
+import org.cora.graphics.graphics.Surface;
+import org.cora.graphics.graphics.myColor;
+import org.lwjgl.BufferUtils;
+
+/**
+ * Render frames without display and print their checksum and the rendering time
+ */
+public class HeadlessMain
+{
+    public static void main(String[] args)
+    {
+        int frames = (args.length > 0) ? Integer.parseInt(args[0]) : 60;
+        int sprites = (args.length > 1) ? Integer.parseInt(args[1]) : 500;
+
+        SoftwareBackend backend = new SoftwareBackend(800, 600);
+        Graphics g = new Graphics(backend, 800, 600);
+
+        Surface surface = createChecker(32, 32);
+        g.loadTextureGL(surface);
+
+        Image images[] = new Image[sprites];
+        for (int i = 0; i < sprites; i++)
+        {
+            images[i] = new Image(surface);
+            images[i].setPos((i * 37) % 800, (i * 53) % 600);
+            images[i].setRadians(i * 0.1f);
+        }
+
+        long start = System.nanoTime();
+        for (int f = 0; f < frames; f++)
+        {
+            g.clear();
+
+            g.beginBatch();
+            for (int i = 0; i < sprites; i++)
+            {
+                images[i].draw(g);
+            }
+            g.endBatch();
+
+            g.setColor(myColor.RED(0.5f));
+            g.fillCircle(400, 300, 100, 32);
+            g.setColor(myColor.WHITE());
+            g.drawRec(10, 10, 780, 580);
+        }
+        long time = System.nanoTime() - start;
+
+        System.out.println("checksum " + Long.toHexString(backend.checksum()));
+        System.out.println(frames + " frames, " + (time / frames / 1000) + " us/frame");
+    }
+
+    private static Surface createChecker(int width, int height)
+    {
+        Surface surface = new Surface();
+        surface.w = width;
+        surface.h = height;
+        surface.BytesPerPixel = 4;
+        surface.textureName = "checker";
+        surface.pixels = BufferUtils.createByteBuffer(width * height * 4);
+
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+            {
+                byte v = (byte) ((((x / 8) + (y / 8)) % 2 == 0) ? 255 : 64);
+                surface.pixels.put(v).put(v).put(v).put((byte) 255);
+            }
+        }
+        surface.pixels.flip();
+        return surface;
+    }
+}
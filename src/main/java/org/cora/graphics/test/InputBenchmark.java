@@ -0,0 +1,104 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.input.Input;
+import org.cora.graphics.input.InputEvent;
+
+import static org.lwjgl.glfw.GLFW.GLFW_PRESS;
+import static org.lwjgl.glfw.GLFW.GLFW_RELEASE;
+
+/**
+ * Measure time of one input update, without window, with some keys pressed
+ * each frame, and compare it with clearing the 65,536 pressed flags of the
+ * previous key state
+ */
+public class InputBenchmark
+{
+    private final static int NUMBER_OF_KEYS = 65536;
+
+    public static void main(String[] args)
+    {
+        int frames = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        int keysPerFrame[] = {0, 4, 32};
+
+        Input input = new Input();
+        input.setAzerty(false);
+
+        for (int keys : keysPerFrame)
+        {
+            // Warm up
+            runFrames(input, frames / 10, keys);
+
+            long start = System.nanoTime();
+            int errors = runFrames(input, frames, keys);
+            long time = System.nanoTime() - start;
+
+            System.out.println(keys + " keys per frame: " + (time / frames) + " ns per update, "
+                    + ((errors == 0) ? "state ok" : errors + " WRONG states"));
+        }
+
+        // Previous cost of clearing pressed keys
+        boolean keysPressed[] = new boolean[NUMBER_OF_KEYS];
+        long sum = 0;
+        for (int i = 0; i < frames / 10; i++)
+        {
+            clearBooleans(keysPressed);
+            keysPressed[i & (NUMBER_OF_KEYS - 1)] = true;
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < frames; i++)
+        {
+            clearBooleans(keysPressed);
+            keysPressed[i & (NUMBER_OF_KEYS - 1)] = true;
+            sum += keysPressed[(i * 7) & (NUMBER_OF_KEYS - 1)] ? 1 : 0;
+        }
+        long time = System.nanoTime() - start;
+        System.out.println("boolean clear of " + NUMBER_OF_KEYS + " keys: " + (time / frames) + " ns per frame ("
+                + sum + ")");
+    }
+
+    /**
+     * Each frame, press some keys and release the keys pressed the frame before
+     *
+     * @return number of keys with wrong state
+     */
+    private static int runFrames(Input input, int frames, int keys)
+    {
+        int errors = 0;
+        int key = 'A';
+        for (int i = 0; i < frames; i++)
+        {
+            int first = key;
+            for (int k = 0; k < keys; k++)
+            {
+                input.getEvents().offer(InputEvent.KEY, 256 + (key + k) % 1024, GLFW_PRESS, 0, 0, 0, 0);
+            }
+            input.processEvents(0.016f);
+
+            for (int k = 0; k < keys; k++)
+            {
+                int n = 256 + (first + k) % 1024;
+                if (!input.isKeyPressed(n) || !input.isKeyDown(n))
+                    errors++;
+                input.getEvents().offer(InputEvent.KEY, n, GLFW_RELEASE, 0, 0, 0, 0);
+            }
+            key += keys;
+        }
+
+        input.processEvents(0.016f);
+        for (int k = 0; k < keys; k++)
+        {
+            int n = 256 + (key - keys + k) % 1024;
+            if (input.isKeyPressed(n) || input.isKeyDown(n))
+                errors++;
+        }
+        return errors;
+    }
+
+    private static void clearBooleans(boolean values[])
+    {
+        for (int i = 0; i < values.length; i++)
+        {
+            values[i] = false;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.base.Image;
+import org.cora.graphics.font.Font;
+import org.cora.graphics.font.TextRenderer;
+import org.cora.graphics.manager.FileManager;
+import org.cora.graphics.manager.FontManager;
+import org.cora.graphics.manager.ResidencyManager;
+import org.cora.graphics.manager.TextureManager;
+
+/**
+ * Enable residency after creating a font, without display, and check that font
+ * pixels are kept for text rendered on the CPU once budgets are exceeded
+ */
+public class ResidencyCheck
+{
+    public static void main(String[] args)
+    {
+        FileManager.init(ResidencyCheck.class);
+        Font font = FontManager.getInstance().createFont("/font.bmp", 32);
+        if (font == null)
+        {
+            System.out.println("Can't create font");
+            return;
+        }
+
+        TextureManager manager = TextureManager.getInstance();
+        manager.enableResidency(0, 0);
+        ResidencyManager residency = manager.getResidency();
+
+        // Font surface becomes the oldest one, its pixels are over budget
+        for (int i = 0; i < 3; i++)
+        {
+            residency.endFrame();
+        }
+
+        boolean isKept = font.getSurface('A').pixels != null;
+        System.out.println("font pixels " + ((isKept) ? "kept" : "RELEASED"));
+
+        if (isKept)
+        {
+            Image image = new TextRenderer(font).transformToImage("Residency");
+            System.out.println("text image " + ((image != null) ? "created" : "MISSING"));
+        }
+        System.out.println(residency.getStats());
+    }
+}
@@ -0,0 +1,139 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.font.Alignement;
+import org.cora.graphics.font.Font;
+import org.cora.graphics.font.TextLayout;
+import org.cora.graphics.font.TextRenderer;
+import org.cora.graphics.graphics.Graphics;
+import org.cora.graphics.graphics.SoftwareBackend;
+import org.cora.graphics.graphics.Surface;
+import org.lwjgl.BufferUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+
+/**
+ * Print bytes allocated per call by text layout and printing once warmed up
+ */
+public class TextAllocationBenchmark
+{
+    private final static String TEXT = "Lorem ipsum dolor sit amet, consectetur adipiscing elit.\n"
+            + "Sed do eiusmod tempor\tincididunt ut labore et dolore magna aliqua. Ut enim ad minim"
+            + " veniam, quis nostrud exercitation ullamco laboris nisi ut aliquip ex ea commodo.";
+
+    public static void main(String[] args)
+    {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : 10000;
+
+        SoftwareBackend backend = new SoftwareBackend(400, 300);
+        Graphics g = new Graphics(backend, 400, 300);
+
+        Surface surface = createFont();
+        g.loadTextureGL(surface);
+
+        final TextRenderer renderer = new TextRenderer(new Font(surface, 8, 8));
+        renderer.setMaxWidth(200);
+        renderer.setProportional(true);
+        renderer.setAlignement(Alignement.FULL);
+
+        final StringBuilder builder = new StringBuilder(TEXT);
+        final TextLayout layout = new TextLayout();
+        final ArrayList<String> strs = new ArrayList<String>();
+        final ArrayList<Integer> widths = new ArrayList<Integer>();
+        final ArrayList<Alignement> aligns = new ArrayList<Alignement>();
+
+        measure("layout String", runs, new Runnable()
+        {
+            public void run()
+            {
+                renderer.layout(TEXT, Alignement.FULL, layout);
+            }
+        });
+        measure("layout StringBuilder", runs, new Runnable()
+        {
+            public void run()
+            {
+                renderer.layout(builder, Alignement.FULL, layout);
+            }
+        });
+        measure("cached layout String", runs, new Runnable()
+        {
+            public void run()
+            {
+                renderer.getLayout(TEXT, Alignement.FULL);
+            }
+        });
+        measure("transformToStrs", runs, new Runnable()
+        {
+            public void run()
+            {
+                strs.clear();
+                widths.clear();
+                aligns.clear();
+                renderer.transformToStrs(TEXT, strs, widths, aligns, Alignement.FULL);
+            }
+        });
+        measure("print String", runs / 10, new Runnable()
+        {
+            public void run()
+            {
+                renderer.print(g, TEXT, 10, 10);
+            }
+        });
+        measure("print StringBuilder", runs / 10, new Runnable()
+        {
+            public void run()
+            {
+                renderer.print(g, builder, 10, 10);
+            }
+        });
+    }
+
+    private static void measure(String name, int runs, Runnable task)
+    {
+        // Warm up
+        for (int i = 0; i < runs; i++)
+            task.run();
+
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        long start = System.nanoTime();
+        long bytes = bean.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < runs; i++)
+            task.run();
+        bytes = bean.getThreadAllocatedBytes(thread) - bytes;
+        long time = System.nanoTime() - start;
+
+        System.out.println(name + ": " + (bytes / runs) + " bytes/call, "
+                + (time / runs / 1000f) + " us/call");
+    }
+
+    private static Surface createFont()
+    {
+        Surface surface = new Surface();
+        surface.w = 128;
+        surface.h = 128;
+        surface.BytesPerPixel = 4;
+        surface.pixels = BufferUtils.createByteBuffer(128 * 128 * 4);
+
+        // One filled block per glyph, narrower for even characters
+        for (int c = 33; c < 256; c++)
+        {
+            int x0 = (c % 16) * 8;
+            int y0 = (c / 16) * 8;
+            int w = (c % 2 == 0) ? 5 : 7;
+            for (int y = 0; y < 8; y++)
+            {
+                for (int x = 0; x < w; x++)
+                {
+                    int o = ((y0 + y) * 128 + x0 + x) * 4;
+                    surface.pixels.put(o, (byte) 255).put(o + 1, (byte) 255)
+                            .put(o + 2, (byte) 255).put(o + 3, (byte) 255);
+                }
+            }
+        }
+        return surface;
+    }
+}
@@ -0,0 +1,57 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.input.TextBuffer;
+
+/**
+ * Check text buffer edits against the same edits on a StringBuilder, including
+ * replacements with the buffer itself
+ */
+public class TextBufferCheck
+{
+    public static void main(String[] args)
+    {
+        int errors = 0;
+
+        errors += check("self replace all", "hello", 0, 5);
+        errors += check("self insert at start", "hello", 0, 0);
+        errors += check("self insert in middle", "hello", 2, 2);
+        errors += check("self replace middle", "hello world", 3, 8);
+        errors += check("self insert at end", "hello", 5, 5);
+
+        // Gap moved and buffer grown before the self replacement
+        TextBuffer text = new TextBuffer(4);
+        StringBuilder expected = new StringBuilder();
+        text.setText("abcdef");
+        expected.append("abcdef");
+        text.replace(1, 2, "XYZ");
+        expected.replace(1, 2, "XYZ");
+        int caret = 4 + text.length();
+        text.replace(4, 6, text);
+        expected.replace(4, 6, expected.toString());
+        errors += compare("self replace after edits", text, expected.toString(), caret);
+
+        System.out.println((errors == 0) ? "all checks ok" : errors + " checks FAILED");
+    }
+
+    private static int check(String name, String initial, int start, int end)
+    {
+        TextBuffer text = new TextBuffer();
+        text.setText(initial);
+        text.replace(start, end, text);
+
+        String expected = new StringBuilder(initial).replace(start, end, initial).toString();
+        return compare(name, text, expected, start + initial.length());
+    }
+
+    /**
+     * @param caret expected caret, after the inserted text
+     * @return 1 if the text or the caret is wrong
+     */
+    private static int compare(String name, TextBuffer text, String expected, int caret)
+    {
+        String result = text.toString();
+        boolean isEqual = result.equals(expected) && text.getCaret() == caret;
+        System.out.println(name + ": " + ((isEqual) ? "ok" : "WRONG \"" + result + "\" instead of \"" + expected + "\""));
+        return (isEqual) ? 0 : 1;
+    }
+}
@@ -0,0 +1,99 @@
+package org.cora.graphics.test;
+
+import org.cora.graphics.graphics.Surface;
+import org.cora.graphics.manager.TextureManager;
+import org.lwjgl.BufferUtils;
+
+import java.awt.image.BufferedImage;
+import java.util.Random;
+
+/**
+ * Compare conversion time of TextureManager.transformToImage with the previous
+ * getRGB and put per byte implementation
+ */
+public class TransformBenchmark
+{
+    public static void main(String[] args)
+    {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 4096;
+        int runs = (args.length > 1) ? Integer.parseInt(args[1]) : 5;
+
+        int types[] = {BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_RGB,
+                BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_3BYTE_BGR,
+                BufferedImage.TYPE_USHORT_565_RGB};
+        String names[] = {"INT_ARGB", "INT_RGB", "4BYTE_ABGR", "3BYTE_BGR", "USHORT_565_RGB"};
+
+        for (int t = 0; t < types.length; t++)
+        {
+            BufferedImage image = createImage(size, size, types[t]);
+
+            // Warm up
+            Surface expected = transformToImageOld(image);
+            Surface result = TextureManager.transformToImage(image);
+
+            long old = Long.MAX_VALUE;
+            long current = Long.MAX_VALUE;
+            for (int i = 0; i < runs; i++)
+            {
+                long start = System.nanoTime();
+                transformToImageOld(image);
+                old = Math.min(old, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                TextureManager.transformToImage(image);
+                current = Math.min(current, System.nanoTime() - start);
+            }
+
+            System.out.println(names[t] + " " + size + "x" + size
+                    + ": old " + (old / 1000000) + " ms, new " + (current / 1000000) + " ms, "
+                    + ((expected.pixels.equals(result.pixels)) ? "same pixels" : "DIFFERENT pixels"));
+        }
+    }
+
+    private static BufferedImage createImage(int width, int height, int type)
+    {
+        BufferedImage image = new BufferedImage(width, height, type);
+        Random random = new Random(42);
+        int row[] = new int[width];
+        for (int y = 0; y < height; y++)
+        {
+            for (int x = 0; x < width; x++)
+                row[x] = random.nextInt();
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * Previous implementation of TextureManager.transformToImage
+     */
+    private static Surface transformToImageOld(BufferedImage image)
+    {
+        Surface surface = new Surface();
+        surface.w = image.getWidth();
+        surface.h = image.getHeight();
+        surface.BytesPerPixel = 4;
+
+        int[] pixels = new int[image.getWidth() * image.getHeight()];
+        image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0,
+                image.getWidth());
+
+        surface.pixels = BufferUtils.createByteBuffer(image.getWidth()
+                * image.getHeight() * surface.BytesPerPixel);
+
+        for (int y = 0; y < image.getHeight(); y++)
+        {
+            for (int x = 0; x < image.getWidth(); x++)
+            {
+                int pixel = pixels[y * image.getWidth() + x];
+                surface.pixels.put((byte) ((pixel >> 16) & 0xFF)); // red
+                surface.pixels.put((byte) ((pixel >> 8) & 0xFF)); // green
+                surface.pixels.put((byte) (pixel & 0xFF)); // blue
+                surface.pixels.put((byte) ((pixel >> 24) & 0xFF)); // alpha
+            }
+        }
+
+        surface.pixels.flip();
+        return surface;
+    }
+}